@@ -0,0 +1,69 @@
+package com.itinerary.auth;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue (AuthHandler.login) and verification (every /api/* call without a
+ * cache hit), with the same HS256 key setup as MainVerticle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JwtBenchmark {
+
+    private Vertx vertx;
+    private JWTAuth jwtAuth;
+    private JsonObject claims;
+    private String token;
+
+    @Setup
+    public void setup() {
+        vertx = Vertx.vertx();
+        jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addJwk(new JsonObject().put("kty", "oct").put("k", "c3VwZXJzZWNyZXRrZXk=")));
+        // exp far in the future so tokens stay valid for the whole run
+        claims = new JsonObject()
+                .put("sub", "65f1c0ffee0000000000beef")
+                .put("username", "bench")
+                .put("iat", 1_723_423_423L)
+                .put("exp", 4_102_444_800L);
+        token = jwtAuth.generateToken(claims);
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtAuth.generateToken(claims);
+    }
+
+    @Benchmark
+    public User verify() throws Exception {
+        return jwtAuth.authenticate(new TokenCredentials(token))
+                .toCompletionStage().toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,74 @@
+package com.itinerary.bench;
+
+import com.itinerary.auth.CachingJWTAuthHandler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.JWTAuthHandler;
+
+import static com.itinerary.bench.InstanceScalingBenchmark.await;
+
+/**
+ * Measures per-request auth overhead of JWTAuthHandler against CachingJWTAuthHandler
+ * by replaying one token against a route that does nothing else.
+ *
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.itinerary.bench.AuthOverheadBenchmark
+ *     -Dexec.args="[requests]"
+ */
+public class AuthOverheadBenchmark {
+
+    private static final int PORT = 8891;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        Vertx vertx = Vertx.vertx();
+        try {
+            JWTAuth jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                    .addJwk(new JsonObject().put("kty", "oct").put("k", "c3VwZXJzZWNyZXRrZXk=")));
+            long now = System.currentTimeMillis() / 1000;
+            String token = jwtAuth.generateToken(new JsonObject()
+                    .put("sub", "bench-user").put("username", "bench").put("iat", now).put("exp", now + 3600));
+
+            Router router = Router.router(vertx);
+            router.get("/plain").handler(ctx -> ctx.end());
+            router.get("/jwt").handler(JWTAuthHandler.create(jwtAuth)).handler(ctx -> ctx.end());
+            router.get("/cached").handler(new CachingJWTAuthHandler(vertx, jwtAuth, new JsonObject()))
+                    .handler(ctx -> ctx.end());
+            await(vertx.createHttpServer().requestHandler(router).listen(PORT));
+            HttpClient http = vertx.createHttpClient();
+
+            double baseline = run(http, "/plain", token, requests);
+            double jwt = run(http, "/jwt", token, requests);
+            double cached = run(http, "/cached", token, requests);
+
+            System.out.printf("%-24s %12s %16s%n", "handler", "us/request", "auth us/request");
+            System.out.printf("%-24s %12.2f %16s%n", "none", baseline, "-");
+            System.out.printf("%-24s %12.2f %16.2f%n", "JWTAuthHandler", jwt, jwt - baseline);
+            System.out.printf("%-24s %12.2f %16.2f%n", "CachingJWTAuthHandler", cached, cached - baseline);
+        } finally {
+            await(vertx.close());
+        }
+    }
+
+    private static double run(HttpClient http, String path, String token, int requests) throws Exception {
+        // Warm up, then time sequential requests so the difference is per-request CPU
+        for (int i = 0; i < requests / 5; i++) {
+            call(http, path, token);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            call(http, path, token);
+        }
+        return (System.nanoTime() - start) / 1000.0 / requests;
+    }
+
+    private static void call(HttpClient http, String path, String token) throws Exception {
+        await(http.request(HttpMethod.GET, PORT, "localhost", path)
+                .compose(req -> req.putHeader("Authorization", "Bearer " + token).send())
+                .compose(resp -> resp.body()));
+    }
+}
@@ -0,0 +1,139 @@
+package com.itinerary.bench;
+
+import com.itinerary.MainVerticle;
+import com.itinerary.metrics.LatencyHistogram;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import static com.itinerary.bench.InstanceScalingBenchmark.await;
+
+/**
+ * Dashboard payload size and latency with response compression off and on.
+ *
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.itinerary.bench.CompressionBenchmark
+ *     -Dexec.args="[trips] [requests]"
+ *
+ * Each run starts one MainVerticle on the in-memory engine, seeds a user with trips
+ * of ten days and five places a day, then issues sequential GETs asking for gzip.
+ * The client does not decompress, so the bytes column is what crosses the wire and
+ * the latency excludes client-side inflation.
+ */
+public class CompressionBenchmark {
+
+    private static final int PORT = 8892;
+    private static final int WARMUP_REQUESTS = 200;
+    private static final String[] PATHS = {"/api/dashboard", "/api/dashboard?view=summary"};
+
+    public static void main(String[] args) throws Exception {
+        int trips = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        System.out.printf("%-12s %-30s %12s %10s %10s %10s%n", "compression", "path", "bytes", "mean ms", "p50 ms", "p99 ms");
+        for (boolean compression : new boolean[]{false, true}) {
+            run(compression, trips, requests);
+        }
+    }
+
+    private static void run(boolean compression, int trips, int requests) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            JsonObject config = new JsonObject()
+                    .put("httpPort", PORT)
+                    .put("storage", new JsonObject().put("engine", "memory"))
+                    // a single client hammers one user; measure compression, not the limiter
+                    .put("admission", new JsonObject().put("enabled", false))
+                    .put("http", new JsonObject()
+                            .put("compression", new JsonObject().put("enabled", compression)));
+            await(vertx.deployVerticle(MainVerticle::new, new DeploymentOptions().setConfig(config)));
+
+            HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                    .setDefaultPort(PORT)
+                    .setTryUseCompression(false));
+
+            String token = seed(client, trips);
+
+            for (String path : PATHS) {
+                for (int i = 0; i < WARMUP_REQUESTS; i++) {
+                    await(get(client, path, token));
+                }
+                LatencyHistogram latency = new LatencyHistogram();
+                long bytes = 0;
+                for (int i = 0; i < requests; i++) {
+                    long start = System.nanoTime();
+                    Buffer body = await(get(client, path, token));
+                    latency.recordNanos(System.nanoTime() - start);
+                    bytes = body.length();
+                }
+                System.out.printf("%-12s %-30s %12d %10.3f %10.3f %10.3f%n", compression ? "gzip" : "off", path,
+                        bytes, latency.sumSeconds() * 1000 / latency.count(),
+                        latency.quantileSeconds(0.5) * 1000, latency.quantileSeconds(0.99) * 1000);
+            }
+        } finally {
+            await(vertx.close());
+        }
+    }
+
+    private static String seed(HttpClient client, int trips) throws Exception {
+        JsonObject credentials = new JsonObject().put("username", "compression-bench").put("password", "bench-password");
+        await(send(client, HttpMethod.POST, "/auth/signup", null, credentials));
+        String token = new JsonObject(await(send(client, HttpMethod.POST, "/auth/login", null, credentials)))
+                .getString("token");
+
+        for (int t = 0; t < trips; t++) {
+            JsonObject created = new JsonObject(await(send(client, HttpMethod.POST, "/api/trips", token,
+                    new JsonObject().put("tripName", "Trip " + t).put("description", "Compression benchmark trip"))));
+            String tripId = created.getJsonObject("trip").getString("_id");
+
+            JsonArray operations = new JsonArray();
+            for (int d = 1; d <= 10; d++) {
+                JsonArray places = new JsonArray();
+                for (int p = 0; p < 5; p++) {
+                    places.add(new JsonObject()
+                            .put("activity", "Activity " + d + "-" + p)
+                            .put("time", String.format("%02d:00", 8 + p * 2))
+                            .put("location", "Somewhere in the old town")
+                            .put("notes", "Book tickets in advance"));
+                }
+                operations.add(new JsonObject().put("op", "addDay").put("dayNumber", d)
+                        .put("date", String.format("2024-09-%02d", d)).put("places", places));
+            }
+            await(send(client, HttpMethod.POST, "/api/trips/" + tripId + "/batch", token,
+                    new JsonObject().put("operations", operations)));
+        }
+        return token;
+    }
+
+    private static Future<Buffer> get(HttpClient client, String path, String token) {
+        RequestOptions options = new RequestOptions()
+                .setMethod(HttpMethod.GET)
+                .setURI(path)
+                .putHeader("Authorization", "Bearer " + token)
+                .putHeader("Accept-Encoding", "gzip, deflate");
+        return client.request(options).compose(req -> req.send().compose(CompressionBenchmark::body));
+    }
+
+    private static Future<Buffer> send(HttpClient client, HttpMethod method, String uri, String token, JsonObject body) {
+        RequestOptions options = new RequestOptions().setMethod(method).setURI(uri);
+        if (token != null) {
+            options.putHeader("Authorization", "Bearer " + token);
+        }
+        return client.request(options)
+                .compose(req -> req.send(body.toBuffer()).compose(CompressionBenchmark::body));
+    }
+
+    private static Future<Buffer> body(HttpClientResponse response) {
+        if (response.statusCode() >= 300) {
+            return Future.failedFuture(response.request().getURI() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+}
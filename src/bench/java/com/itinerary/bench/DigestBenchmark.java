@@ -0,0 +1,95 @@
+package com.itinerary.bench;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.itinerary.email.DigestVerticle;
+import com.itinerary.repository.InMemoryTripRepository;
+import com.itinerary.repository.InMemoryUserRepository;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+
+import static com.itinerary.bench.InstanceScalingBenchmark.await;
+
+/**
+ * Daily digest throughput and heap on the in-memory engine.
+ *
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.itinerary.bench.DigestBenchmark
+ *     -Dexec.args="[trips] [tripsPerUser] [workers]"
+ *
+ * Seeds users with an email address and trips of ten days, one of them on the
+ * digest date, then triggers one run over the event bus and prints the figures it
+ * reports. Messages go to the logging sender with its output muted, so the run
+ * measures reading, grouping and rendering.
+ */
+public class DigestBenchmark {
+
+    private static final String DATE = LocalDate.now().plusDays(1).toString();
+
+    public static void main(String[] args) throws Exception {
+        int trips = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int tripsPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        ((Logger) LoggerFactory.getLogger("com.itinerary.email")).setLevel(Level.WARN);
+
+        Vertx vertx = Vertx.vertx();
+        try {
+            seed(vertx, trips, tripsPerUser);
+
+            JsonObject config = new JsonObject()
+                    .put("storage", new JsonObject().put("engine", "memory"))
+                    .put("email", new JsonObject().put("transport", "log"))
+                    .put("digest", new JsonObject()
+                            .put("runAt", "00:00")
+                            .put("workerPoolSize", workers));
+            await(vertx.deployVerticle(new DigestVerticle(), new DeploymentOptions().setConfig(config)));
+
+            Message<JsonObject> reply = await(vertx.eventBus().request(DigestVerticle.RUN_ADDRESS, DATE,
+                    new DeliveryOptions().setSendTimeout(600_000)));
+            JsonObject figures = reply.body();
+            System.out.printf("trips=%d users=%d workers=%d%n", trips, figures.getLong("digests"), workers);
+            System.out.printf("rendered=%d seconds=%.2f rendered/s=%.0f peak heap=%d MB%n",
+                    figures.getLong("rendered"), figures.getDouble("seconds"),
+                    figures.getDouble("renderedPerSecond"), figures.getLong("peakHeapBytes") >> 20);
+        } finally {
+            await(vertx.close());
+        }
+    }
+
+    private static void seed(Vertx vertx, int trips, int tripsPerUser) throws Exception {
+        InMemoryUserRepository users = new InMemoryUserRepository(vertx);
+        InMemoryTripRepository tripRepository = new InMemoryTripRepository(vertx);
+        String userId = null;
+        for (int t = 0; t < trips; t++) {
+            if (t % tripsPerUser == 0) {
+                int u = t / tripsPerUser;
+                userId = await(users.insert(new JsonObject()
+                        .put("username", "user" + u)
+                        .put("email", "user" + u + "@example.com")));
+            }
+            JsonArray days = new JsonArray();
+            for (int d = 0; d < 10; d++) {
+                JsonArray places = new JsonArray();
+                for (int p = 0; p < 5; p++) {
+                    places.add(new JsonObject().put("activity", "Place " + p).put("time", (9 + p) + ":00")
+                            .put("location", "Somewhere " + p));
+                }
+                days.add(new JsonObject().put("dayNumber", d + 1)
+                        .put("date", d == 3 ? DATE : "2000-01-0" + (d % 9 + 1))
+                        .put("places", places));
+            }
+            await(tripRepository.insert(new JsonObject()
+                    .put("userId", userId)
+                    .put("tripName", "Trip " + t)
+                    .put("days", days)
+                    .put("updatedAt", System.currentTimeMillis())));
+        }
+    }
+}
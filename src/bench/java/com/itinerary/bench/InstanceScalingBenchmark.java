@@ -0,0 +1,88 @@
+package com.itinerary.bench;
+
+import com.itinerary.MainVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares throughput of a single MainVerticle against one instance per core.
+ *
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.itinerary.bench.InstanceScalingBenchmark
+ *     -Dexec.args="[path] [connections] [seconds]"
+ */
+public class InstanceScalingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "/health";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        double single = run(1, path, connections, seconds);
+        double scaled = run(cores, path, connections, seconds);
+
+        System.out.printf("%-12s %12s%n", "instances", "req/s");
+        System.out.printf("%-12d %12.0f%n", 1, single);
+        System.out.printf("%-12d %12.0f%n", cores, scaled);
+        System.out.printf("speedup: %.2fx%n", scaled / single);
+    }
+
+    private static double run(int instances, String path, int connections, int seconds) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            DeploymentOptions options = new DeploymentOptions()
+                    .setConfig(new JsonObject().put("httpPort", 8888))
+                    .setInstances(instances);
+            await(vertx.deployVerticle(MainVerticle::new, options));
+
+            HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                    .setDefaultPort(8888)
+                    .setMaxPoolSize(connections));
+
+            AtomicLong completed = new AtomicLong();
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+            Promise<Void> done = Promise.promise();
+            AtomicLong active = new AtomicLong(connections);
+
+            for (int i = 0; i < connections; i++) {
+                loop(client, path, warmupEnd, end, completed, active, done);
+            }
+            await(done.future());
+            return completed.get() / (double) seconds;
+        } finally {
+            await(vertx.close());
+        }
+    }
+
+    private static void loop(HttpClient client, String path, long warmupEnd, long end,
+                             AtomicLong completed, AtomicLong active, Promise<Void> done) {
+        if (System.nanoTime() >= end) {
+            if (active.decrementAndGet() == 0) {
+                done.tryComplete();
+            }
+            return;
+        }
+        client.request(HttpMethod.GET, path)
+                .compose(req -> req.send().compose(resp -> resp.body()))
+                .onComplete(ar -> {
+                    if (ar.succeeded() && System.nanoTime() >= warmupEnd) {
+                        completed.incrementAndGet();
+                    }
+                    loop(client, path, warmupEnd, end, completed, active, done);
+                });
+    }
+
+    static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,404 @@
+package com.itinerary.bench;
+
+import com.itinerary.MainVerticle;
+import com.itinerary.metrics.LatencyHistogram;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.itinerary.bench.InstanceScalingBenchmark.await;
+
+/**
+ * Scripted user sessions against a locally started MainVerticle: signup, login,
+ * create a trip, add days, add/update/reorder/delete an activity, then poll the
+ * dashboard (a full read followed by a conditional one that should get 304).
+ *
+ * mvn -Pbench compile exec:java@load -Dload.rate=50 -Dload.concurrency=256 -Dload.seconds=60
+ *     [-Dload.storage=memory|mongo] [-Dload.days=3]
+ *
+ * With a rate, sessions start open-loop on a fixed schedule no matter how slow the
+ * server is; at most concurrency of them are in flight and the rest wait in a
+ * backlog. Response times are measured from when a session was due to start, so
+ * time spent in that backlog is charged to its first request and a stalled server
+ * cannot hide behind fewer requests (coordinated omission). Sessions still in the
+ * backlog when the run stops are charged the same way: their wait so far is
+ * recorded against the first request (a lower bound, as they never got an
+ * answer) and they are reported as neverStarted. The service column is
+ * send-to-response only. With rate 0 the generator runs closed-loop instead:
+ * concurrency sessions back to back, where both columns are equal and percentiles
+ * are not corrected.
+ *
+ * The first two seconds are warmup and not recorded. Results are printed and
+ * written to target/load-result.json.
+ */
+public class LoadGenerator {
+
+    private static final int PORT = 8891;
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final String PASSWORD = "load-password";
+    // The first request of every session, which backlog time is charged to
+    private static final String FIRST_ROUTE = "POST /auth/signup";
+
+    public static void main(String[] args) throws Exception {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 20;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String storage = args.length > 3 ? args[3] : "memory";
+        int days = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+
+        Vertx server = Vertx.vertx();
+        // One client event loop: all generator state lives on its context, without locks
+        Vertx clientVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        try {
+            DeploymentOptions options = new DeploymentOptions()
+                    .setConfig(new JsonObject()
+                            .put("httpPort", PORT)
+                            .put("storage", new JsonObject().put("engine", storage))
+                            // every simulated session comes from one address; measure the server, not the limiter
+                            .put("admission", new JsonObject().put("enabled", false)))
+                    .setInstances(Runtime.getRuntime().availableProcessors());
+            await(server.deployVerticle(MainVerticle::new, options));
+
+            WebClient client = WebClient.create(clientVertx, new WebClientOptions()
+                    .setDefaultHost("localhost")
+                    .setDefaultPort(PORT)
+                    .setMaxPoolSize(concurrency)
+                    .setKeepAlive(true));
+
+            Run run = new Run(clientVertx, client, rate, concurrency, TimeUnit.SECONDS.toNanos(seconds), days);
+            Context context = clientVertx.getOrCreateContext();
+            Promise<Void> done = Promise.promise();
+            context.runOnContext(v -> run.start(done));
+            await(done.future());
+
+            JsonObject report = run.report(storage, seconds);
+            print(report);
+            Path out = Paths.get("target", "load-result.json");
+            Files.createDirectories(out.getParent());
+            Files.write(out, report.encodePrettily().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            await(clientVertx.close());
+            await(server.close());
+        }
+    }
+
+    private static void print(JsonObject report) {
+        JsonObject sessions = report.getJsonObject("sessions");
+        System.out.printf("mode=%s rate=%s/s concurrency=%d storage=%s%n", report.getString("mode"),
+                report.getValue("rate"), report.getInteger("concurrency"), report.getString("storage"));
+        System.out.printf("sessions completed=%d failed=%d neverStarted=%d%n", sessions.getLong("completed"),
+                sessions.getLong("failed"), sessions.getLong("neverStarted"));
+        if (sessions.getLong("neverStarted") > 0) {
+            System.out.printf("WARNING: %d sessions were still queued at the end. Their wait so far is counted in %s,"
+                    + " but only as a lower bound: the server was overloaded and every percentile understates it.%n",
+                    sessions.getLong("neverStarted"), FIRST_ROUTE);
+        }
+        System.out.printf("%-52s %8s %6s %9s %9s %9s %9s %9s %9s %12s%n", "route", "count", "errors", "req/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms");
+        JsonObject routes = report.getJsonObject("routes");
+        for (String route : routes.fieldNames()) {
+            JsonObject r = routes.getJsonObject(route);
+            System.out.printf("%-52s %8d %6d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n", route,
+                    r.getLong("count"), r.getLong("errors"), r.getDouble("throughput"),
+                    r.getDouble("p50"), r.getDouble("p90"), r.getDouble("p99"), r.getDouble("p999"),
+                    r.getDouble("max"), r.getDouble("serviceP99"));
+        }
+    }
+
+    private static final class RouteStats {
+        final LatencyHistogram response = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        long errors;
+        // Backlog samples in response that were never sent
+        long unserved;
+
+        long served() {
+            return response.count() - unserved;
+        }
+    }
+
+    /**
+     * One load run. Only ever touched from the client context.
+     */
+    private static final class Run {
+
+        private final Vertx vertx;
+        private final WebClient client;
+        private final double rate;
+        private final int concurrency;
+        private final long durationNanos;
+        private final int days;
+        private final String runId = Long.toString(System.currentTimeMillis(), 36);
+        private final Map<String, RouteStats> routes = new LinkedHashMap<>();
+        private final ArrayDeque<Long> backlog = new ArrayDeque<>();
+
+        private Promise<Void> done;
+        private long startNanos;
+        private long recordFrom;
+        private long periodicId = -1;
+        private long nextSession;
+        private long userSeq;
+        private int active;
+        private boolean stopping;
+        private long completed;
+        private long failed;
+
+        Run(Vertx vertx, WebClient client, double rate, int concurrency, long durationNanos, int days) {
+            this.vertx = vertx;
+            this.client = client;
+            this.rate = rate;
+            this.concurrency = concurrency;
+            this.durationNanos = durationNanos;
+            this.days = days;
+        }
+
+        void start(Promise<Void> done) {
+            this.done = done;
+            startNanos = System.nanoTime();
+            recordFrom = startNanos + WARMUP_NANOS;
+            vertx.setTimer(TimeUnit.NANOSECONDS.toMillis(WARMUP_NANOS + durationNanos), t -> {
+                stopping = true;
+                if (periodicId >= 0) {
+                    vertx.cancelTimer(periodicId);
+                }
+                recordBacklog();
+                finishIfIdle();
+            });
+
+            if (rate > 0) {
+                periodicId = vertx.setPeriodic(1, t -> schedule());
+            } else {
+                for (int i = 0; i < concurrency; i++) {
+                    launch(System.nanoTime());
+                }
+            }
+        }
+
+        /**
+         * Starts every session whose slot has come, judged by the schedule rather than
+         * by when the timer actually fired.
+         */
+        private void schedule() {
+            long now = System.nanoTime();
+            double intervalNanos = 1e9 / rate;
+            while (!stopping) {
+                long due = startNanos + (long) (nextSession * intervalNanos);
+                if (due > now) {
+                    break;
+                }
+                nextSession++;
+                if (active < concurrency) {
+                    launch(due);
+                } else {
+                    backlog.add(due);
+                }
+            }
+        }
+
+        private void launch(long due) {
+            active++;
+            session(new Session(due)).onComplete(ar -> {
+                active--;
+                if (ar.succeeded()) {
+                    completed++;
+                } else {
+                    failed++;
+                }
+                if (!stopping) {
+                    if (rate <= 0) {
+                        launch(System.nanoTime());
+                    } else if (!backlog.isEmpty()) {
+                        launch(backlog.poll());
+                    }
+                }
+                finishIfIdle();
+            });
+        }
+
+        /**
+         * Sessions that never left the backlog would otherwise vanish from the
+         * percentiles, which is exactly the overload case they should dominate.
+         */
+        private void recordBacklog() {
+            long now = System.nanoTime();
+            RouteStats stats = routes.computeIfAbsent(FIRST_ROUTE, k -> new RouteStats());
+            for (long due : backlog) {
+                if (due >= recordFrom) {
+                    stats.response.recordNanos(now - due);
+                    stats.unserved++;
+                }
+            }
+        }
+
+        private void finishIfIdle() {
+            if (stopping && active == 0) {
+                done.tryComplete();
+            }
+        }
+
+        private final class Session {
+            long due;
+            final boolean recorded;
+            String token;
+            String tripId;
+            String etag;
+
+            Session(long due) {
+                this.due = due;
+                this.recorded = due >= recordFrom;
+            }
+        }
+
+        private Future<Void> session(Session s) {
+            String username = "load-" + runId + "-" + (++userSeq);
+            JsonObject credentials = new JsonObject().put("username", username).put("password", PASSWORD);
+
+            Future<HttpResponse<Buffer>> chain =
+                    step(s, FIRST_ROUTE, HttpMethod.POST, "/auth/signup", credentials, 201)
+                    .compose(r -> step(s, "POST /auth/login", HttpMethod.POST, "/auth/login", credentials, 200))
+                    .compose(r -> {
+                        s.token = r.bodyAsJsonObject().getString("token");
+                        return step(s, "POST /api/trips", HttpMethod.POST, "/api/trips",
+                                new JsonObject().put("tripName", "Load trip").put("description", username), 201);
+                    })
+                    .map(r -> {
+                        s.tripId = r.bodyAsJsonObject().getJsonObject("trip").getString("_id");
+                        return r;
+                    });
+
+            for (int d = 1; d <= days; d++) {
+                int dayNumber = d;
+                chain = chain.compose(r -> step(s, "POST /api/trips/:tripId/days", HttpMethod.POST,
+                        "/api/trips/" + s.tripId + "/days", day(dayNumber), 200));
+            }
+
+            return chain
+                    .compose(r -> step(s, "POST /api/trips/:tripId/days/:dayNumber/activities", HttpMethod.POST,
+                            "/api/trips/" + s.tripId + "/days/1/activities",
+                            new JsonObject().put("activity", "Gallery").put("time", "16:00"), 200))
+                    .compose(r -> step(s, "PUT /api/trips/:tripId/days/:dayNumber/activities/:activityName",
+                            HttpMethod.PUT, "/api/trips/" + s.tripId + "/days/1/activities/Gallery",
+                            new JsonObject().put("time", "17:00").put("notes", "moved"), 200))
+                    .compose(r -> step(s, "PUT /api/trips/:tripId/days/:dayNumber/reorder", HttpMethod.PUT,
+                            "/api/trips/" + s.tripId + "/days/1/reorder",
+                            new JsonObject().put("activities", new JsonArray()
+                                    .add(place("Gallery", "09:00"))
+                                    .add(place("Lunch", "12:30"))
+                                    .add(place("Museum", "15:00"))), 200))
+                    .compose(r -> step(s, "DELETE /api/trips/:tripId/days/:dayNumber/activities/:activityName",
+                            HttpMethod.DELETE, "/api/trips/" + s.tripId + "/days/1/activities/Gallery", null, 200))
+                    .compose(r -> step(s, "GET /api/dashboard", HttpMethod.GET, "/api/dashboard", null, 200))
+                    .compose(r -> {
+                        s.etag = r.getHeader("ETag");
+                        return step(s, "GET /api/dashboard (If-None-Match)", HttpMethod.GET, "/api/dashboard",
+                                null, 304);
+                    })
+                    .mapEmpty();
+        }
+
+        /**
+         * Sends one request and records it. The first request of a session is timed
+         * from the session's due time; later ones from when they were sent, since the
+         * script issues them as soon as the previous one returns.
+         */
+        private Future<HttpResponse<Buffer>> step(Session s, String route, HttpMethod method, String uri,
+                                                  JsonObject body, int expectedStatus) {
+            HttpRequest<Buffer> request = client.request(method, uri);
+            if (s.token != null) {
+                request.bearerTokenAuthentication(s.token);
+            }
+            if (expectedStatus == 304 && s.etag != null) {
+                request.putHeader("If-None-Match", s.etag);
+            }
+
+            long sent = System.nanoTime();
+            long from = Math.min(s.due, sent);
+            s.due = Long.MAX_VALUE;
+
+            Future<HttpResponse<Buffer>> response = body == null ? request.send() : request.sendJsonObject(body);
+            return response.transform(ar -> {
+                long now = System.nanoTime();
+                RouteStats stats = routes.computeIfAbsent(route, k -> new RouteStats());
+                boolean ok = ar.succeeded() && ar.result().statusCode() == expectedStatus;
+                if (s.recorded) {
+                    stats.service.recordNanos(now - sent);
+                    stats.response.recordNanos(now - from);
+                    if (!ok) {
+                        stats.errors++;
+                    }
+                }
+                if (ok) {
+                    return Future.succeededFuture(ar.result());
+                }
+                return Future.failedFuture(ar.failed() ? ar.cause().getMessage()
+                        : route + " returned " + ar.result().statusCode());
+            });
+        }
+
+        JsonObject report(String storage, int seconds) {
+            JsonObject byRoute = new JsonObject();
+            routes.forEach((route, stats) -> byRoute.put(route, new JsonObject()
+                    .put("count", stats.served())
+                    .put("errors", stats.errors)
+                    .put("unserved", stats.unserved)
+                    .put("throughput", stats.served() / (double) seconds)
+                    .put("p50", millis(stats.response, 0.50))
+                    .put("p90", millis(stats.response, 0.90))
+                    .put("p99", millis(stats.response, 0.99))
+                    .put("p999", millis(stats.response, 0.999))
+                    .put("max", millis(stats.response, 1.0))
+                    .put("serviceP50", millis(stats.service, 0.50))
+                    .put("serviceP99", millis(stats.service, 0.99))));
+
+            return new JsonObject()
+                    .put("mode", rate > 0 ? "open" : "closed")
+                    .put("rate", rate)
+                    .put("concurrency", concurrency)
+                    .put("seconds", seconds)
+                    .put("storage", storage)
+                    .put("sessions", new JsonObject()
+                            .put("completed", completed)
+                            .put("failed", failed)
+                            .put("neverStarted", (long) backlog.size()))
+                    .put("routes", byRoute);
+        }
+
+        private static double millis(LatencyHistogram histogram, double quantile) {
+            return histogram.quantileSeconds(quantile) * 1000;
+        }
+
+        private static JsonObject day(int dayNumber) {
+            return new JsonObject()
+                    .put("dayNumber", dayNumber)
+                    .put("date", LocalDate.of(2024, 8, 1).plusDays(dayNumber - 1).toString())
+                    .put("places", new JsonArray()
+                            .add(place("Museum", "10:00"))
+                            .add(place("Lunch", "12:30")));
+        }
+
+        private static JsonObject place(String activity, String time) {
+            return new JsonObject().put("activity", activity).put("time", time);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.itinerary.bench;
+
+import com.itinerary.cache.TripCache;
+import com.itinerary.email.EmailOutbox;
+import com.itinerary.events.TripEvents;
+import com.itinerary.handlers.TripHandler;
+import com.itinerary.repository.MongoTripRepository;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.BodyHandler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.itinerary.bench.InstanceScalingBenchmark.await;
+
+/**
+ * Counts Mongo round trips and latency per day/activity mutation against a local
+ * MongoDB. The "before" rows replay the former findOne-then-update sequences
+ * directly on the client; the "after" rows go through TripHandler over HTTP.
+ *
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.itinerary.bench.MutationRoundTripBenchmark
+ *     -Dexec.args="[iterations]"
+ */
+public class MutationRoundTripBenchmark {
+
+    private static final String USER_ID = "bench-user";
+    private static final int PORT = 8890;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Vertx vertx = Vertx.vertx();
+        try {
+            MongoClient mongo = MongoClient.createShared(vertx, new JsonObject()
+                    .put("connection_string", "mongodb://localhost:27017")
+                    .put("db_name", "itinerary_bench"), "bench");
+            AtomicLong calls = new AtomicLong();
+            MongoClient counting = counting(mongo, calls);
+
+            TripHandler handler = new TripHandler(new MongoTripRepository(counting),
+                    TripCache.shared(vertx, new JsonObject().put("tripCache", new JsonObject().put("enabled", false))),
+                    EmailOutbox.disabled(), new TripEvents(vertx), TimeUnit.DAYS.toMillis(30));
+            Router router = Router.router(vertx);
+            router.route().handler(BodyHandler.create());
+            router.route().handler(ctx -> {
+                ctx.setUser(User.create(new JsonObject().put("sub", USER_ID)));
+                ctx.next();
+            });
+            router.post("/api/trips/:tripId/days").handler(handler::addDay);
+            router.put("/api/trips/:tripId/days/:dayNumber/activities/:activityName").handler(handler::updateActivity);
+            router.delete("/api/trips/:tripId/days/:dayNumber/activities/:activityName").handler(handler::deleteActivity);
+            await(vertx.createHttpServer().requestHandler(router).listen(PORT));
+            HttpClient http = vertx.createHttpClient();
+
+            await(mongo.dropCollection("trips").recover(err -> Future.succeededFuture()));
+            String tripId = await(mongo.insert("trips", new JsonObject()
+                    .put("userId", USER_ID).put("tripName", "bench").put("days", new JsonArray())
+                    .put("updatedAt", System.currentTimeMillis())));
+
+            System.out.printf("%-22s %-7s %14s %14s%n", "operation", "mode", "round trips/op", "mean us/op");
+
+            // addDay
+            long start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                JsonObject check = tripQuery(tripId).put("days.dayNumber", 1000 + i);
+                await(mongo.findOne("trips", check, null));
+                await(mongo.updateCollection("trips", tripQuery(tripId), new JsonObject()
+                        .put("$push", new JsonObject().put("days", day(1000 + i)))));
+            }
+            report("addDay", "before", 2.0, start, iterations);
+
+            calls.set(0);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                send(http, HttpMethod.POST, "/api/trips/" + tripId + "/days", day(i));
+            }
+            report("addDay", "after", calls.get() / (double) iterations, start, iterations);
+
+            // updateActivity: former path read the whole trip and rewrote days.$.places
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                JsonObject findQuery = tripQuery(tripId).put("days.dayNumber", i);
+                JsonObject trip = await(mongo.findOne("trips", findQuery, null));
+                JsonArray places = new JsonArray();
+                for (Object day : trip.getJsonArray("days")) {
+                    if (((JsonObject) day).getInteger("dayNumber") == i) {
+                        places = ((JsonObject) day).getJsonArray("places");
+                    }
+                }
+                places.getJsonObject(0).put("notes", "before-" + i);
+                await(mongo.updateCollection("trips", findQuery, new JsonObject()
+                        .put("$set", new JsonObject().put("days.$.places", places))));
+            }
+            report("updateActivity", "before", 2.0, start, iterations);
+
+            calls.set(0);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                send(http, HttpMethod.PUT, "/api/trips/" + tripId + "/days/" + i + "/activities/Museum",
+                        new JsonObject().put("notes", "after-" + i));
+            }
+            report("updateActivity", "after", calls.get() / (double) iterations, start, iterations);
+
+            // deleteActivity
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                JsonObject findQuery = tripQuery(tripId).put("days.dayNumber", 1000 + i);
+                await(mongo.findOne("trips", findQuery, null));
+                await(mongo.updateCollection("trips", findQuery, new JsonObject()
+                        .put("$pull", new JsonObject().put("days.$.places",
+                                new JsonObject().put("activity", "Museum")))));
+            }
+            report("deleteActivity", "before", 2.0, start, iterations);
+
+            calls.set(0);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                send(http, HttpMethod.DELETE, "/api/trips/" + tripId + "/days/" + i + "/activities/Museum", null);
+            }
+            report("deleteActivity", "after", calls.get() / (double) iterations, start, iterations);
+        } finally {
+            await(vertx.close());
+        }
+    }
+
+    private static JsonObject tripQuery(String tripId) {
+        return new JsonObject().put("_id", tripId).put("userId", USER_ID);
+    }
+
+    private static JsonObject day(int dayNumber) {
+        return new JsonObject()
+                .put("dayNumber", dayNumber)
+                .put("date", "2024-08-01")
+                .put("places", new JsonArray()
+                        .add(new JsonObject().put("activity", "Museum").put("time", "10:00"))
+                        .add(new JsonObject().put("activity", "Lunch").put("time", "12:30")));
+    }
+
+    private static void send(HttpClient http, HttpMethod method, String uri, JsonObject body) throws Exception {
+        await(http.request(method, PORT, "localhost", uri)
+                .compose(req -> (body == null ? req.send() : req.send(Buffer.buffer(body.encode())))
+                        .compose(resp -> resp.body())));
+    }
+
+    private static void report(String operation, String mode, double roundTrips, long start, int iterations) {
+        double micros = (System.nanoTime() - start) / 1000.0 / iterations;
+        System.out.printf("%-22s %-7s %14.2f %14.1f%n", operation, mode, roundTrips, micros);
+    }
+
+    /**
+     * Wraps a client so every interface call made by the handler is counted as one round trip.
+     */
+    static MongoClient counting(MongoClient delegate, AtomicLong calls) {
+        return (MongoClient) Proxy.newProxyInstance(MongoClient.class.getClassLoader(),
+                new Class<?>[]{MongoClient.class}, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() != Object.class) {
+                        calls.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
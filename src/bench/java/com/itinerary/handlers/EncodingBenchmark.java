@@ -0,0 +1,108 @@
+package com.itinerary.handlers;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON, CBOR and Smile for the negotiated read and write paths, on month-long trips
+ * with ten places a day. Encode is what getTripById and getAllTrips do per response;
+ * decode is what a client (or a write route) does with the body.
+ *
+ * The byte sizes are printed by running the class directly:
+ *
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.itinerary.handlers.EncodingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class EncodingBenchmark {
+
+    private static final String[] FORMATS = {Encodings.JSON, Encodings.CBOR, Encodings.SMILE};
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"1", "50"})
+    public int trips;
+
+    private String mediaType;
+    private JsonObject body;
+    private Buffer encoded;
+
+    @Setup
+    public void setup() {
+        mediaType = mediaType(format);
+        body = envelope(trips);
+        encoded = Encodings.encode(body, mediaType);
+    }
+
+    @Benchmark
+    public Buffer encode() {
+        return Encodings.encode(body, mediaType);
+    }
+
+    @Benchmark
+    public JsonObject decode() {
+        // Touch the nested days so lazily wrapped maps are materialized for every format
+        JsonObject decoded = Encodings.decode(encoded, mediaType);
+        JsonArray list = decoded.getJsonArray("trips");
+        for (int i = 0; i < list.size(); i++) {
+            list.getJsonObject(i).getJsonArray("days").getJsonObject(0);
+        }
+        return decoded;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-8s %-32s %12s %12s%n", "trips", "format", "bytes", "gzip bytes");
+        for (int count : new int[]{1, 50}) {
+            JsonObject body = envelope(count);
+            for (String mediaType : FORMATS) {
+                Buffer encoded = Encodings.encode(body, mediaType);
+                System.out.printf("%-8d %-32s %12d %12d%n", count, mediaType, encoded.length(), gzipped(encoded));
+            }
+        }
+    }
+
+    private static JsonObject envelope(int count) {
+        return new JsonObject().put("trips", new JsonArray(TripFixtures.trips(count, 30, 10)));
+    }
+
+    private static String mediaType(String format) {
+        switch (format) {
+            case "cbor":
+                return Encodings.CBOR;
+            case "smile":
+                return Encodings.SMILE;
+            default:
+                return Encodings.JSON;
+        }
+    }
+
+    private static int gzipped(Buffer buffer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(buffer.getBytes());
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.itinerary.handlers;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response building for the read paths. The tree* methods build bodies the way
+ * TripHandler used to: Mongo result list -> JsonArray -> envelope -> String, which
+ * end(String) then turns into bytes. The streaming* methods are what it does now
+ * with DocumentWriter. The summary* methods do the same for the summary view, whose
+ * elements are a couple of hundred bytes rather than a few KB. Compare
+ * gc.alloc.rate.norm (bytes allocated per operation) from the gc profiler, which
+ * the jmh execution enables by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SerializationBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int trips;
+
+    private List<JsonObject> documents;
+    private List<JsonObject> summaries;
+    private JsonObject single;
+
+    @Setup
+    public void setup() {
+        documents = TripFixtures.trips(trips, 14, 6);
+        summaries = TripFixtures.summaries(trips, 14, 6);
+        single = documents.get(0);
+    }
+
+    @Benchmark
+    public Buffer treeDashboard() {
+        return Buffer.buffer(new JsonObject()
+                .put("trips", new JsonArray(documents))
+                .encode());
+    }
+
+    @Benchmark
+    public Buffer streamingDashboard() {
+        return DocumentWriter.envelope(DocumentWriter.JSON, "trips", documents);
+    }
+
+    @Benchmark
+    public Buffer treeSummaryDashboard() {
+        return Buffer.buffer(new JsonObject()
+                .put("trips", new JsonArray(summaries))
+                .encode());
+    }
+
+    @Benchmark
+    public Buffer streamingSummaryDashboard() {
+        return DocumentWriter.envelope(DocumentWriter.JSON, "trips", summaries, DocumentWriter.SUMMARY_SIZE_HINT);
+    }
+
+    @Benchmark
+    public Buffer treeTripById() {
+        return Buffer.buffer(new JsonObject()
+                .put("trip", single)
+                .encode());
+    }
+
+    @Benchmark
+    public Buffer streamingTripById() {
+        return DocumentWriter.envelope(DocumentWriter.JSON, "trip", single);
+    }
+
+    @Benchmark
+    public String dashboardETag() {
+        return ETags.forDashboard("full", new JsonArray(documents));
+    }
+
+    @Benchmark
+    public Buffer treeErrorResponse() {
+        return Buffer.buffer(ErrorResponse.create(404, "Trip not found").encode());
+    }
+
+    @Benchmark
+    public Buffer streamingErrorResponse() {
+        return ErrorResponse.buffer(404, "Trip not found");
+    }
+}
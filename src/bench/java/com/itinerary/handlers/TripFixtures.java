@@ -0,0 +1,86 @@
+package com.itinerary.handlers;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic trip documents shaped like production data: two-week trips with
+ * six places a day. A fixed seed keeps benchmark runs comparable across machines.
+ */
+public final class TripFixtures {
+
+    private static final String[] ACTIVITIES = {
+            "Museum visit", "Walking tour", "Lunch at the market", "Cathedral", "River cruise",
+            "Old town", "Botanical garden", "Dinner reservation", "Gallery", "Viewpoint"
+    };
+
+    private TripFixtures() {
+    }
+
+    public static List<JsonObject> trips(int count, int days, int placesPerDay) {
+        Random random = new Random(42);
+        List<JsonObject> trips = new ArrayList<>(count);
+        for (int t = 0; t < count; t++) {
+            trips.add(trip(random, t, days, placesPerDay));
+        }
+        return trips;
+    }
+
+    /**
+     * The summary view of trips(count, days, placesPerDay), with the fields the
+     * dashboard's summary projection returns.
+     */
+    public static List<JsonObject> summaries(int count, int days, int placesPerDay) {
+        List<JsonObject> summaries = new ArrayList<>(count);
+        for (JsonObject trip : trips(count, days, placesPerDay)) {
+            JsonArray dayList = trip.getJsonArray("days");
+            summaries.add(new JsonObject()
+                    .put("_id", trip.getString("_id"))
+                    .put("tripName", trip.getString("tripName"))
+                    .put("description", trip.getString("description"))
+                    .put("createdAt", trip.getLong("createdAt"))
+                    .put("updatedAt", trip.getLong("updatedAt"))
+                    .put("dayCount", dayList.size())
+                    .put("activityCount", dayList.size() * placesPerDay)
+                    .put("startDate", dayList.getJsonObject(0).getString("date"))
+                    .put("endDate", dayList.getJsonObject(dayList.size() - 1).getString("date")));
+        }
+        return summaries;
+    }
+
+    public static JsonObject trip(int days, int placesPerDay) {
+        return trip(new Random(42), 0, days, placesPerDay);
+    }
+
+    private static JsonObject trip(Random random, int index, int days, int placesPerDay) {
+        JsonArray dayList = new JsonArray();
+        for (int d = 1; d <= days; d++) {
+            JsonArray places = new JsonArray();
+            for (int p = 0; p < placesPerDay; p++) {
+                places.add(new JsonObject()
+                        .put("activity", ACTIVITIES[random.nextInt(ACTIVITIES.length)] + " " + p)
+                        .put("time", String.format("%02d:%02d", 8 + p * 2, random.nextInt(4) * 15))
+                        .put("location", "Location " + random.nextInt(1000))
+                        .put("notes", "Bring tickets and check opening hours for day " + d));
+            }
+            dayList.add(new JsonObject()
+                    .put("dayNumber", d)
+                    .put("date", String.format("2024-08-%02d", Math.min(d, 28)))
+                    .put("places", places));
+        }
+
+        long createdAt = 1_723_423_423_000L + index * 60_000L;
+        return new JsonObject()
+                .put("_id", String.format("%024x", index + 1))
+                .put("userId", "65f1c0ffee0000000000beef")
+                .put("tripName", "Trip " + index)
+                .put("description", "Benchmark trip number " + index)
+                .put("days", dayList)
+                .put("createdAt", createdAt)
+                .put("updatedAt", createdAt + random.nextInt(1_000_000));
+    }
+}
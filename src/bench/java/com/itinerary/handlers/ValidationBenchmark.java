@@ -0,0 +1,77 @@
+package com.itinerary.handlers;
+
+import com.itinerary.repository.TripOperations;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request validation and the in-memory day/activity lookup.
+ *
+ * The nested days/places walk that updateActivity used to run on every request
+ * now only exists in the batch replay, so that is what activityLookup measures;
+ * a 30-day trip with ten places a day is the worst case we see.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ValidationBenchmark {
+
+    private JsonObject trip;
+    private JsonObject updateActivityOp;
+    private JsonObject addDayOp;
+
+    @Setup
+    public void setup() {
+        trip = TripFixtures.trip(30, 10);
+        JsonArray lastDayPlaces = trip.getJsonArray("days").getJsonObject(29).getJsonArray("places");
+        updateActivityOp = new JsonObject()
+                .put("op", "updateActivity")
+                .put("dayNumber", 30)
+                .put("activityName", lastDayPlaces.getJsonObject(9).getString("activity"))
+                .put("notes", "updated");
+        addDayOp = new JsonObject()
+                .put("op", "addDay")
+                .put("dayNumber", 31)
+                .put("date", "2024-09-01")
+                .put("places", lastDayPlaces);
+    }
+
+    @Benchmark
+    public void tripIdAndDayNumber(Blackhole bh) {
+        bh.consume(ValidationUtils.isValidTripId("65f1c0ffee0000000000beef"));
+        bh.consume(ValidationUtils.isValidDayNumber("12"));
+    }
+
+    @Benchmark
+    public boolean invalidDayNumber() {
+        // The NumberFormatException path
+        return ValidationUtils.isValidDayNumber("twelve");
+    }
+
+    @Benchmark
+    public String validateBatchOperation() {
+        return TripBatchHandler.validate(addDayOp);
+    }
+
+    @Benchmark
+    public JsonObject activityLookup() {
+        JsonArray days = trip.getJsonArray("days").copy();
+        return TripOperations.replay(updateActivityOp, days, new JsonObject());
+    }
+}
@@ -0,0 +1,47 @@
+package com.itinerary;
+
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the HttpServerOptions every MainVerticle listens with from the "http"
+ * section of config.json (and the top-level httpPort).
+ *
+ * HTTP/2 is offered in cleartext (h2c), both via Upgrade and prior knowledge, so
+ * one connection can multiplex many API calls. Responses are gzip/deflate encoded
+ * when the client asks for it. TCP fast open and SO_REUSEPORT only take effect with the
+ * native transport (see Main), and are ignored otherwise.
+ */
+final class HttpServerProfile {
+
+    private HttpServerProfile() {
+    }
+
+    static HttpServerOptions fromConfig(JsonObject config) {
+        JsonObject http = config.getJsonObject("http", new JsonObject());
+        JsonObject compression = http.getJsonObject("compression", new JsonObject());
+
+        HttpServerOptions options = new HttpServerOptions()
+                .setPort(config.getInteger("httpPort", 8888))
+                .setTcpNoDelay(http.getBoolean("tcpNoDelay", true))
+                .setTcpFastOpen(http.getBoolean("tcpFastOpen", true))
+                .setReusePort(http.getBoolean("reusePort", true))
+                .setAcceptBacklog(http.getInteger("acceptBacklog", 1024))
+                .setIdleTimeout(http.getInteger("idleTimeoutSeconds", 60))
+                .setIdleTimeoutUnit(TimeUnit.SECONDS)
+                .setCompressionSupported(compression.getBoolean("enabled", true))
+                .setCompressionLevel(compression.getInteger("level", 6));
+
+        if (http.getBoolean("http2", true)) {
+            options.setHttp2ClearTextEnabled(true)
+                    .setInitialSettings(new Http2Settings()
+                            .setMaxConcurrentStreams(http.getLong("maxConcurrentStreams", 100L)));
+        } else {
+            options.setHttp2ClearTextEnabled(false);
+        }
+        return options;
+    }
+}
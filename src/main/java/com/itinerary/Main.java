@@ -1,10 +1,83 @@
 package com.itinerary;
 
+import com.itinerary.email.DigestVerticle;
+import com.itinerary.email.OutboxDrainVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 public class Main {
+
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
     public static void main(String[] args) {
-        Vertx vertx = Vertx.vertx();
-        vertx.deployVerticle(new MainVerticle());
+        JsonObject config = loadConfig();
+
+        // epoll/kqueue when available: needed for TCP fast open and SO_REUSEPORT
+        boolean nativeTransport = config.getJsonObject("http", new JsonObject()).getBoolean("nativeTransport", true);
+        Vertx vertx = Vertx.vertx(new VertxOptions().setPreferNativeTransport(nativeTransport));
+
+        // One MainVerticle per event loop; all instances listen with the same options
+        // from HttpServerProfile (port and socket settings from the "http" config), so
+        // they share the port and Vert.x round-robins incoming connections between them.
+        int instances = config.getInteger("instances", 0);
+        if (instances <= 0) {
+            instances = Runtime.getRuntime().availableProcessors();
+        }
+
+        DeploymentOptions options = new DeploymentOptions()
+                .setConfig(config)
+                .setInstances(instances);
+
+        vertx.deployVerticle(MainVerticle::new, options)
+                .onSuccess(id -> log.info("verticle=MainVerticle instances={} status=deployed", options.getInstances()))
+                .compose(id -> deployBackground(vertx, config))
+                .onFailure(err -> {
+                    log.error("verticle=MainVerticle status=failed error=\"{}\"", err.getMessage(), err);
+                    vertx.close();
+                });
+    }
+
+    /**
+     * Background jobs run as a single instance each: the outbox drainer claims records
+     * in batches and the digest runs once a day, and one instance keeps both free of
+     * contention. Each is skipped when its config section has enabled=false.
+     */
+    private static Future<Void> deployBackground(Vertx vertx, JsonObject config) {
+        DeploymentOptions single = new DeploymentOptions().setConfig(config);
+        Future<Void> deployed = Future.succeededFuture();
+        if (config.getJsonObject("email", new JsonObject()).getBoolean("enabled", true)) {
+            deployed = deployed.compose(v -> vertx.deployVerticle(new OutboxDrainVerticle(), single))
+                    .onSuccess(id -> log.info("verticle=OutboxDrainVerticle instances=1 status=deployed"))
+                    .mapEmpty();
+        }
+        if (config.getJsonObject("digest", new JsonObject()).getBoolean("enabled", true)) {
+            deployed = deployed.compose(v -> vertx.deployVerticle(new DigestVerticle(), single))
+                    .onSuccess(id -> log.info("verticle=DigestVerticle instances=1 status=deployed"))
+                    .mapEmpty();
+        }
+        return deployed;
+    }
+
+    static JsonObject loadConfig() {
+        // Read straight from the classpath: VertxOptions depend on it, so no Vertx exists yet
+        try (InputStream in = Main.class.getClassLoader().getResourceAsStream("config.json")) {
+            if (in == null) {
+                log.warn("config=config.json status=missing using defaults");
+                return new JsonObject();
+            }
+            return new JsonObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            log.warn("config=config.json status=unreadable error=\"{}\" using defaults", e.getMessage());
+            return new JsonObject();
+        }
     }
-}
\ No newline at end of file
+}
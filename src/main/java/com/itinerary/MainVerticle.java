@@ -1,32 +1,92 @@
 package com.itinerary;
 
+import com.itinerary.admission.AdmissionController;
+import com.itinerary.auth.CachingJWTAuthHandler;
+import com.itinerary.auth.PasswordHasher;
+import com.itinerary.cache.TripCache;
+import com.itinerary.db.IndexManager;
+import com.itinerary.db.MongoClients;
+import com.itinerary.db.PoolStats;
+import com.itinerary.email.EmailOutbox;
+import com.itinerary.events.StreamStats;
+import com.itinerary.events.TripEventStream;
+import com.itinerary.events.TripEvents;
 import com.itinerary.handlers.AuthHandler;
+import com.itinerary.handlers.TripBatchHandler;
 import com.itinerary.handlers.TripHandler;
 import com.itinerary.handlers.WebHandler;
+import com.itinerary.logging.RequestLog;
+import com.itinerary.metrics.MetricsRegistry;
+import com.itinerary.repository.BreakingTripRepository;
+import com.itinerary.repository.BreakingUserRepository;
+import com.itinerary.repository.InMemoryOutboxRepository;
+import com.itinerary.repository.InMemoryTripRepository;
+import com.itinerary.repository.InMemoryUserRepository;
+import com.itinerary.repository.MongoOutboxRepository;
+import com.itinerary.repository.MongoTripRepository;
+import com.itinerary.repository.MongoUserRepository;
+import com.itinerary.repository.OutboxRepository;
+import com.itinerary.repository.StorageBreaker;
+import com.itinerary.repository.TripRepository;
+import com.itinerary.repository.UserRepository;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.auth.jwt.JWTAuthOptions;
 import io.vertx.ext.mongo.MongoClient;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
-import io.vertx.ext.web.handler.JWTAuthHandler;
-import io.vertx.ext.web.handler.StaticHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class MainVerticle extends AbstractVerticle {
 
+    private static final Logger log = LoggerFactory.getLogger(MainVerticle.class);
+
     @Override
     public void start(Promise<Void> startPromise) {
-        JsonObject mongoConfig = new JsonObject()
-                .put("connection_string", "mongodb://localhost:27017")
-                .put("db_name", "itinerary_app");
-
-        MongoClient mongoClient = MongoClient.createShared(vertx, mongoConfig);
+        JsonObject config = config();
+        RequestLog.configure(config);
+
+        MetricsRegistry metrics = MetricsRegistry.shared(vertx);
+        metrics.startEventLoopProbe(vertx);
+
+        // "memory" keeps everything in process (tests, load runs); anything else is Mongo
+        String engine = config.getJsonObject("storage", new JsonObject()).getString("engine", "mongo");
+        // Deleted trips are remembered this long for delta sync; older watermarks get 410
+        long tombstoneRetentionMillis = TimeUnit.DAYS.toMillis(
+                config.getJsonObject("sync", new JsonObject()).getInteger("tombstoneRetentionDays", 30));
+        MongoClient mongoClient = null;
+        TripRepository tripRepository;
+        UserRepository userRepository;
+        OutboxRepository outboxRepository;
+        if ("memory".equals(engine)) {
+            tripRepository = new InMemoryTripRepository(vertx);
+            userRepository = new InMemoryUserRepository(vertx);
+            outboxRepository = new InMemoryOutboxRepository(vertx);
+        } else {
+            // The client is shared, so every MainVerticle instance uses the same pool
+            // and scaling instances does not multiply Mongo connections
+            JsonObject mongo = config.getJsonObject("mongo", new JsonObject());
+            PoolStats poolStats = PoolStats.shared(vertx, MongoClients.poolSize(mongo));
+            StorageBreaker breaker = StorageBreaker.shared(vertx, mongo.getJsonObject("circuitBreaker", new JsonObject()));
+
+            mongoClient = MongoClients.createShared(vertx, mongo, poolStats, metrics.mongoCommandListener());
+            tripRepository = new BreakingTripRepository(vertx, new MongoTripRepository(mongoClient, tombstoneRetentionMillis), breaker);
+            userRepository = new BreakingUserRepository(new MongoUserRepository(mongoClient), breaker);
+            outboxRepository = new MongoOutboxRepository(mongoClient);
+
+            metrics.registerComponent("mongo_pool", poolStats::stats);
+            metrics.registerComponent("mongo_breaker", breaker::stats);
+        }
 
         // Simplified JWT configuration for Vert.x 4.5.1
         JWTAuthOptions jwtOptions = new JWTAuthOptions()
@@ -34,6 +94,7 @@ public class MainVerticle extends AbstractVerticle {
                         .put("kty", "oct")
                         .put("k", "c3VwZXJzZWNyZXRrZXk=")); // Base64 encoded "supersecretkey"
 
+        // Each instance owns its JWTAuth and handlers; none of them hold mutable state
         JWTAuth jwtAuth = JWTAuth.create(vertx, jwtOptions);
 
         Router router = Router.router(vertx);
@@ -42,13 +103,38 @@ public class MainVerticle extends AbstractVerticle {
         Set<String> allowedHeaders = new HashSet<>();
         allowedHeaders.add("Content-Type");
         allowedHeaders.add("Authorization");
-
-        router.route().handler(CorsHandler.create("*").allowedHeaders(allowedHeaders));
+        allowedHeaders.add("If-None-Match");
+        allowedHeaders.add(RequestLog.HEADER);
+
+        router.route().handler(metrics.httpHandler());
+        router.route().handler(RequestLog.correlationHandler());
+        router.route().handler(CorsHandler.create("*")
+                .allowedHeaders(allowedHeaders)
+                .exposedHeader("ETag")
+                .exposedHeader(RequestLog.HEADER));
         router.route().handler(BodyHandler.create());
 
-        AuthHandler authHandler = new AuthHandler(mongoClient, jwtAuth);
-        TripHandler tripHandler = new TripHandler(mongoClient);
-        WebHandler webHandler = new WebHandler(vertx); // Fixed: passing vertx parameter
+        PasswordHasher passwordHasher = PasswordHasher.shared(vertx, config);
+
+        EmailOutbox emailOutbox = new EmailOutbox(outboxRepository, config);
+
+        AuthHandler authHandler = new AuthHandler(userRepository, jwtAuth, passwordHasher, emailOutbox);
+        TripCache tripCache = TripCache.shared(vertx, config);
+        TripEvents tripEvents = new TripEvents(vertx);
+        TripHandler tripHandler = new TripHandler(tripRepository, tripCache, emailOutbox, tripEvents,
+                tombstoneRetentionMillis);
+        TripBatchHandler tripBatchHandler = new TripBatchHandler(tripRepository, tripCache, emailOutbox, tripEvents);
+        TripEventStream tripEventStream = new TripEventStream(vertx, config);
+
+        metrics.registerComponent("hashing", passwordHasher::stats);
+        metrics.registerComponent("trip_cache", tripCache::stats);
+        metrics.registerComponent("sse", StreamStats.shared(vertx)::stats);
+
+        WebHandler webHandler = new WebHandler(vertx); // The first instance reads static assets into memory
+
+        // Admission control: per-client buckets for /auth/*, per-user ones for /api/* (below)
+        AdmissionController admission = AdmissionController.shared(vertx, config, metrics);
+        router.route("/auth/*").handler(admission.byClientAddress());
 
         // Auth routes
         router.post("/auth/signup").handler(authHandler::signup);
@@ -64,15 +150,27 @@ public class MainVerticle extends AbstractVerticle {
                     .end("{\"status\":\"UP\"}");
         });
 
-        // Static resources
-        router.route("/css/*").handler(StaticHandler.create("webroot"));
-        router.route("/js/*").handler(StaticHandler.create("webroot"));
+        // Prometheus scrape endpoint, behind a bearer token unless none is configured
+        String scrapeToken = config.getJsonObject("metrics", new JsonObject()).getString("scrapeToken");
+        if (scrapeToken == null || scrapeToken.isEmpty()) {
+            log.warn("component=metrics scrapeToken=unset endpoint=/metrics access=open");
+        }
+        router.get("/metrics").handler(metrics.scrapeHandler(scrapeToken));
+
+        // Static resources, served from memory
+        router.get("/css/*").handler(webHandler::serveAsset);
+        router.get("/js/*").handler(webHandler::serveAsset);
 
         // Secure API
-        router.route("/api/*").handler(JWTAuthHandler.create(jwtAuth));
+        CachingJWTAuthHandler jwtAuthHandler = new CachingJWTAuthHandler(vertx, jwtAuth, config);
+        router.route("/api/*").handler(jwtAuthHandler);
+        router.route("/api/*").handler(admission.byUser());
+        metrics.registerComponent("token_cache", jwtAuthHandler::stats);
 
         // Trip routes
         router.get("/api/dashboard").handler(tripHandler::getAllTrips);
+        router.get("/api/trips/stream").handler(tripEventStream::stream); // Before /api/trips/:tripId
+        router.get("/api/trips/changes").handler(tripHandler::getChanges);
         router.post("/api/trips").handler(tripHandler::createTrip);
         router.get("/api/trips/:tripId").handler(tripHandler::getTripById); // ADDED: Get specific trip
         router.put("/api/trips/:tripId").handler(tripHandler::updateTrip);   // ADDED: Update trip
@@ -91,13 +189,35 @@ public class MainVerticle extends AbstractVerticle {
         // Reorder activities within a day
         router.put("/api/trips/:tripId/days/:dayNumber/reorder").handler(tripHandler::reorderActivities);
 
-        vertx.createHttpServer()
-                .requestHandler(router)
-                .listen(8888)
+        // Many edits to one trip in a single request (offline sync)
+        router.post("/api/trips/:tripId/batch").handler(tripBatchHandler::applyBatch);
+
+        Future<Void> storageReady = mongoClient != null ? ensureIndexes(mongoClient) : Future.succeededFuture();
+        storageReady
+                .compose(v -> vertx.createHttpServer(HttpServerProfile.fromConfig(config))
+                        .requestHandler(router)
+                        .listen())
                 .onSuccess(server -> {
-                    System.out.println("HTTP server started on port " + server.actualPort());
+                    log.info("server=http port={} storage={} nativeTransport={} status=started",
+                            server.actualPort(), engine, vertx.isNativeTransportEnabled());
                     startPromise.complete();
                 })
                 .onFailure(startPromise::fail);
     }
-}
\ No newline at end of file
+
+    /**
+     * Only the first instance bootstraps indexes; the others start right away.
+     * Failures are logged but do not stop the server from starting.
+     */
+    private Future<Void> ensureIndexes(MongoClient mongoClient) {
+        LocalMap<String, Boolean> flags = vertx.sharedData().getLocalMap("itinerary.shared");
+        if (flags.putIfAbsent("indexesEnsured", Boolean.TRUE) != null) {
+            return Future.succeededFuture();
+        }
+
+        IndexManager indexManager = new IndexManager(mongoClient);
+        return indexManager.ensureIndexes()
+                .compose(v -> indexManager.verifyQueryPlans())
+                .recover(err -> Future.succeededFuture());
+    }
+}
@@ -0,0 +1,117 @@
+package com.itinerary.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global cap on requests in flight that follows Mongo latency, in the spirit of the
+ * gradient limiters from Netflix's concurrency-limits.
+ *
+ * A slow-moving baseline latency is compared with the latest window's average. While
+ * they agree, the limit grows by about its square root per window (but only if the
+ * window actually came close to the limit). When the recent average rises above the
+ * baseline by more than the tolerance, the limit shrinks by the same ratio, shedding
+ * load before Mongo's pool queue does. With no Mongo samples, as with the in-memory
+ * engine, the limit stays where it is.
+ */
+final class AdaptiveLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int MIN_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile int limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder windowNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong baselineNanos = new AtomicLong();
+    private volatile long recentNanos;
+
+    AdaptiveLimit(int initial, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initial));
+    }
+
+    boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        peakInFlight.accumulateAndGet(current, Math::max);
+        return true;
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    void onSample(long nanos) {
+        windowNanos.add(nanos);
+        windowSamples.increment();
+    }
+
+    /**
+     * Closes the current window and recomputes the limit. Called periodically from a
+     * single timer, so the arithmetic below never races with itself.
+     */
+    void update() {
+        long samples = windowSamples.sumThenReset();
+        long total = windowNanos.sumThenReset();
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (samples < MIN_SAMPLES) {
+            return;
+        }
+
+        long recent = total / samples;
+        recentNanos = recent;
+        long baseline = baselineNanos.get();
+        if (baseline == 0) {
+            baseline = recent;
+        } else {
+            baseline = (long) (baseline * 0.95 + recent * 0.05);
+            // Let the baseline follow a lasting shift down instead of holding on to an old low
+            if (baseline > 2 * recent) {
+                baseline = recent;
+            }
+        }
+        baselineNanos.set(baseline);
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / (double) recent));
+        int current = limit;
+        double target = current * gradient;
+        if (gradient >= 1.0 && peak >= current / 2) {
+            target += Math.sqrt(current);
+        }
+        int next = (int) Math.round(current * (1 - SMOOTHING) + target * SMOOTHING);
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    long baselineNanos() {
+        return baselineNanos.get();
+    }
+
+    long recentNanos() {
+        return recentNanos;
+    }
+}
@@ -0,0 +1,172 @@
+package com.itinerary.admission;
+
+import com.itinerary.handlers.ErrorResponse;
+import com.itinerary.metrics.MetricsRegistry;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the API, shared by every MainVerticle.
+ *
+ * Two checks run before a request reaches its handler:
+ * <ol>
+ *   <li>a per-key token bucket: the JWT subject for /api/*, the client address for
+ *       /auth/*. An empty bucket answers 429 with Retry-After set to when the next
+ *       token is due.</li>
+ *   <li>a global in-flight limit ({@link AdaptiveLimit}) fed by Mongo latency. Above
+ *       it the request is shed with 503 and Retry-After: 1.</li>
+ * </ol>
+ * Both are decided without touching Mongo, so rejections stay cheap when it is the
+ * thing under pressure.
+ */
+public class AdmissionController implements Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "admissionController";
+    private static final long UPDATE_INTERVAL_MS = 500;
+    private static final String RELEASE_KEY = "admission.release";
+
+    private final boolean enabled;
+    private final TokenBuckets users;
+    private final TokenBuckets clients;
+    private final AdaptiveLimit inFlight;
+    private final LongAdder throttled = new LongAdder();
+
+    AdmissionController(JsonObject config) {
+        long maxKeys = config.getLong("maxKeys", 100_000L);
+        JsonObject limit = config.getJsonObject("inFlight", new JsonObject());
+        this.enabled = config.getBoolean("enabled", true);
+        this.users = new TokenBuckets(config.getJsonObject("user", new JsonObject()), 20, 40, maxKeys);
+        this.clients = new TokenBuckets(config.getJsonObject("auth", new JsonObject()), 5, 10, maxKeys);
+        this.inFlight = new AdaptiveLimit(
+                limit.getInteger("initial", 256),
+                limit.getInteger("min", 32),
+                limit.getInteger("max", 2048));
+    }
+
+    /**
+     * Returns the controller shared by all verticles, creating it from the "admission"
+     * section of the config on first use. The creator also wires it to Mongo latency
+     * and starts the timer that adapts the in-flight limit.
+     */
+    public static AdmissionController shared(Vertx vertx, JsonObject config, MetricsRegistry metrics) {
+        LocalMap<String, AdmissionController> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        AdmissionController existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+
+        AdmissionController created = new AdmissionController(config.getJsonObject("admission", new JsonObject()));
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        if (existing != null) {
+            return existing;
+        }
+        metrics.addMongoLatencyListener(created.inFlight::onSample);
+        metrics.registerComponent("admission", created::stats);
+        metrics.registerCounterFamily("itinerary_admission_throttled_total", "kind", created::throttledByKind);
+        vertx.setPeriodic(UPDATE_INTERVAL_MS, id -> created.inFlight.update());
+        return created;
+    }
+
+    /**
+     * For routes behind JWT auth; buckets are per user (the token's sub).
+     */
+    public Handler<RoutingContext> byUser() {
+        return ctx -> {
+            String sub = ctx.user() != null ? ctx.user().principal().getString("sub") : null;
+            admit(ctx, users, "user:" + (sub != null ? sub : clientAddress(ctx)));
+        };
+    }
+
+    /**
+     * For unauthenticated routes such as /auth/*; buckets are per client address.
+     */
+    public Handler<RoutingContext> byClientAddress() {
+        return ctx -> admit(ctx, clients, "ip:" + clientAddress(ctx));
+    }
+
+    private static String clientAddress(RoutingContext ctx) {
+        SocketAddress address = ctx.request().remoteAddress();
+        return address != null && address.host() != null ? address.host() : "unknown";
+    }
+
+    private void admit(RoutingContext ctx, TokenBuckets buckets, String key) {
+        if (!enabled) {
+            ctx.next();
+            return;
+        }
+
+        long waitNanos = buckets.tryAcquire(key);
+        if (waitNanos > 0) {
+            throttled.increment();
+            long retryAfter = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            reject(ctx, 429, retryAfter, "Too many requests");
+            return;
+        }
+
+        if (!inFlight.tryAcquire()) {
+            reject(ctx, 503, 1, "Server busy, please retry");
+            return;
+        }
+        boolean[] released = {false};
+        Runnable release = () -> {
+            if (!released[0]) {
+                released[0] = true;
+                inFlight.release();
+            }
+        };
+        ctx.put(RELEASE_KEY, release);
+        ctx.addEndHandler(v -> release.run());
+        ctx.next();
+    }
+
+    /**
+     * Gives back the request's in-flight slot before the response ends, for
+     * long-lived responses such as event streams that would otherwise hold it for
+     * as long as the client stays connected.
+     */
+    public static void leaveInFlight(RoutingContext ctx) {
+        Runnable release = ctx.get(RELEASE_KEY);
+        if (release != null) {
+            release.run();
+        }
+    }
+
+    private static void reject(RoutingContext ctx, int status, long retryAfterSeconds, String message) {
+        ctx.response()
+                .setStatusCode(status)
+                .putHeader("content-type", "application/json")
+                .putHeader("Retry-After", Long.toString(retryAfterSeconds))
+                .end(ErrorResponse.buffer(status, message));
+    }
+
+    /**
+     * Throttle counts per kind of key; the keys themselves (user ids, client
+     * addresses) are never exported.
+     */
+    Map<String, Long> throttledByKind() {
+        return Map.of("user", users.throttled(), "client", clients.throttled());
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("inFlight", inFlight.inFlight())
+                .put("inFlightLimit", inFlight.limit())
+                .put("shed", inFlight.rejected())
+                .put("throttled", throttled.sum())
+                .put("trackedKeys", users.size() + clients.size())
+                .put("throttledKeys", users.throttledKeys() + clients.throttledKeys())
+                .put("mongoBaselineMs", inFlight.baselineNanos() / 1e6)
+                .put("mongoRecentMs", inFlight.recentNanos() / 1e6);
+    }
+}
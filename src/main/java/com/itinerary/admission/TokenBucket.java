@@ -0,0 +1,43 @@
+package com.itinerary.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket kept as a single "theoretical arrival time" (GCRA): each admitted
+ * request pushes it one emission interval into the future, and a request is refused
+ * while it lies more than the burst allowance ahead of now. Acquiring is one CAS,
+ * with no lock and no refill timer.
+ */
+final class TokenBucket {
+
+    private final AtomicLong theoreticalArrival;
+    final LongAdder admitted = new LongAdder();
+    final LongAdder throttled = new LongAdder();
+
+    TokenBucket(long now) {
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+
+    /**
+     * Returns 0 if a token was taken, otherwise the nanoseconds until one is available.
+     *
+     * @param intervalNanos time to earn one token (1 / rate)
+     * @param burstNanos    extra tokens that may be spent at once, as time ((burst - 1) * interval)
+     */
+    long tryAcquire(long now, long intervalNanos, long burstNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long ahead = next - now - intervalNanos;
+            if (ahead > burstNanos) {
+                throttled.increment();
+                return ahead - burstNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                admitted.increment();
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.itinerary.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.vertx.core.json.JsonObject;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One {@link TokenBucket} per key (user id or client address) with a common rate.
+ * Buckets live in a bounded Caffeine map and are dropped after a few minutes of
+ * inactivity, which only forgets a bucket that had long since refilled.
+ */
+final class TokenBuckets {
+
+    private final Cache<String, TokenBucket> buckets;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongAdder throttled = new LongAdder();
+
+    TokenBuckets(JsonObject config, double defaultRate, int defaultBurst, long maxKeys) {
+        double rate = config.getDouble("ratePerSecond", defaultRate);
+        int burst = Math.max(1, config.getInteger("burst", defaultBurst));
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.burstNanos = (burst - 1) * intervalNanos;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(Math.max(TimeUnit.MINUTES.toNanos(5), intervalNanos * burst)))
+                .build();
+    }
+
+    /**
+     * Returns 0 if the key may proceed, otherwise the nanoseconds until it may retry.
+     */
+    long tryAcquire(String key) {
+        long now = System.nanoTime();
+        long waitNanos = buckets.get(key, k -> new TokenBucket(now)).tryAcquire(now, intervalNanos, burstNanos);
+        if (waitNanos > 0) {
+            throttled.increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Requests refused across all keys since startup.
+     */
+    long throttled() {
+        return throttled.sum();
+    }
+
+    /**
+     * Tracked keys that have been refused at least once. Counted, never listed, so
+     * user ids and client addresses stay out of /metrics.
+     */
+    long throttledKeys() {
+        long keys = 0;
+        for (TokenBucket bucket : buckets.asMap().values()) {
+            if (bucket.throttled.sum() > 0) {
+                keys++;
+            }
+        }
+        return keys;
+    }
+
+    long size() {
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,170 @@
+package com.itinerary.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.web.RoutingContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drop-in replacement for JWTAuthHandler that remembers tokens it has already
+ * verified. The same token is presented on every call of a session, so after the
+ * first request the Base64 decode, HMAC check and claims parse are skipped.
+ *
+ * Entries are keyed by the token's signature segment, which is already a MAC over
+ * header and payload, and hold the full token so a hit is only accepted on an exact
+ * match. Each entry expires at the token's own exp claim and is re-checked on every
+ * hit, so the cache can never extend a token's lifetime.
+ */
+public class CachingJWTAuthHandler implements Handler<RoutingContext> {
+
+    private final JWTAuth jwtAuth;
+    private final TokenCache cache;
+
+    public CachingJWTAuthHandler(Vertx vertx, JWTAuth jwtAuth, JsonObject config) {
+        this.jwtAuth = jwtAuth;
+        this.cache = TokenCache.shared(vertx, config);
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+        String header = ctx.request().getHeader("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            unauthorized(ctx);
+            return;
+        }
+
+        String token = header.substring(7).trim();
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0 || signatureStart == token.length() - 1) {
+            unauthorized(ctx);
+            return;
+        }
+        String key = token.substring(signatureStart + 1);
+
+        VerifiedToken cached = cache.tokens.getIfPresent(key);
+        if (cached != null) {
+            if (cached.matches(token) && cached.expiresAtMillis > System.currentTimeMillis()) {
+                authenticated(ctx, cached.user);
+                return;
+            }
+            if (cached.matches(token)) {
+                cache.tokens.invalidate(key);
+            }
+        }
+
+        jwtAuth.authenticate(new TokenCredentials(token)).onComplete(result -> {
+            if (result.failed()) {
+                unauthorized(ctx);
+                return;
+            }
+
+            User user = result.result();
+            Long exp = user.principal().getLong("exp");
+            // Tokens without exp are verified on every request rather than cached forever
+            if (exp != null) {
+                cache.tokens.put(key, new VerifiedToken(token, user, TimeUnit.SECONDS.toMillis(exp)));
+            }
+            authenticated(ctx, user);
+        });
+    }
+
+    private void authenticated(RoutingContext ctx, User verified) {
+        // A fresh User per request, sharing the read-only principal and attributes
+        ctx.setUser(User.create(verified.principal(), verified.attributes()));
+        ctx.next();
+    }
+
+    private void unauthorized(RoutingContext ctx) {
+        ctx.response().putHeader("WWW-Authenticate", "Bearer");
+        ctx.fail(401);
+    }
+
+    public JsonObject stats() {
+        return cache.stats();
+    }
+
+    private static final class VerifiedToken {
+        private final byte[] token;
+        private final User user;
+        private final long expiresAtMillis;
+
+        VerifiedToken(String token, User user, long expiresAtMillis) {
+            this.token = token.getBytes(StandardCharsets.US_ASCII);
+            this.user = user;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean matches(String presented) {
+            return MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Verified tokens shared by every MainVerticle instance.
+     */
+    static final class TokenCache implements Shareable {
+
+        private static final String SHARED_MAP = "itinerary.shared";
+        private static final String SHARED_KEY = "verifiedTokenCache";
+
+        private final Cache<String, VerifiedToken> tokens;
+
+        private TokenCache(long maxTokens) {
+            this.tokens = Caffeine.newBuilder()
+                    .maximumSize(maxTokens)
+                    .expireAfter(new Expiry<String, VerifiedToken>() {
+                        @Override
+                        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                            long remaining = value.expiresAtMillis - System.currentTimeMillis();
+                            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime,
+                                                      long currentDuration) {
+                            return expireAfterCreate(key, value, currentTime);
+                        }
+
+                        @Override
+                        public long expireAfterRead(String key, VerifiedToken value, long currentTime,
+                                                    long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .recordStats()
+                    .build();
+        }
+
+        static TokenCache shared(Vertx vertx, JsonObject config) {
+            LocalMap<String, TokenCache> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+            TokenCache existing = map.get(SHARED_KEY);
+            if (existing != null) {
+                return existing;
+            }
+            JsonObject authConfig = config.getJsonObject("tokenCache", new JsonObject());
+            TokenCache created = new TokenCache(authConfig.getLong("maxTokens", 50_000L));
+            existing = map.putIfAbsent(SHARED_KEY, created);
+            return existing != null ? existing : created;
+        }
+
+        JsonObject stats() {
+            return new JsonObject()
+                    .put("size", tokens.estimatedSize())
+                    .put("hits", tokens.stats().hitCount())
+                    .put("misses", tokens.stats().missCount())
+                    .put("evictions", tokens.stats().evictionCount());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.itinerary.auth;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated, size-bounded worker pool so
+ * the event loop never blocks on password work. One instance is shared by every
+ * MainVerticle deployed in the same Vert.x instance.
+ */
+public class PasswordHasher implements Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "passwordHasher";
+    private static final String POOL_NAME = "bcrypt-pool";
+
+    private final WorkerExecutor executor;
+    private final int maxQueue;
+    private final int cost;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    PasswordHasher(Vertx vertx, int poolSize, int maxQueue, int cost) {
+        this.executor = vertx.createSharedWorkerExecutor(POOL_NAME, poolSize);
+        this.maxQueue = maxQueue;
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the hasher shared by all verticles of this Vert.x instance, creating it
+     * from the "hashing" section of the config on first use.
+     */
+    public static PasswordHasher shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, PasswordHasher> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        PasswordHasher existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+
+        JsonObject hashing = config.getJsonObject("hashing", new JsonObject());
+        PasswordHasher created = new PasswordHasher(vertx,
+                hashing.getInteger("poolSize", Runtime.getRuntime().availableProcessors()),
+                hashing.getInteger("maxQueue", 256),
+                hashing.getInteger("cost", 10));
+
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        if (existing != null) {
+            created.executor.close();
+            return existing;
+        }
+        return created;
+    }
+
+    public Future<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    public Future<Boolean> verify(String password, String hashed) {
+        return submit(() -> hashed != null && BCrypt.checkpw(password, hashed));
+    }
+
+    private <T> Future<T> submit(HashTask<T> task) {
+        if (pending.incrementAndGet() > maxQueue) {
+            pending.decrementAndGet();
+            rejected.increment();
+            return Future.failedFuture(new SaturatedException());
+        }
+
+        long enqueued = System.nanoTime();
+        return executor.<T>executeBlocking(() -> {
+            long started = System.nanoTime();
+            try {
+                return task.run();
+            } finally {
+                long finished = System.nanoTime();
+                record(started - enqueued, finished - started);
+                pending.decrementAndGet();
+            }
+        }, false);
+    }
+
+    private void record(long waitNanos, long runNanos) {
+        completed.increment();
+        queueWaitNanos.add(waitNanos);
+        hashNanos.add(runNanos);
+        maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        maxHashNanos.accumulateAndGet(runNanos, Math::max);
+    }
+
+    public JsonObject stats() {
+        long count = completed.sum();
+        return new JsonObject()
+                .put("pending", pending.get())
+                .put("maxQueue", maxQueue)
+                .put("cost", cost)
+                .put("completed", count)
+                .put("rejected", rejected.sum())
+                .put("avgQueueWaitMs", count == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / count)
+                .put("maxQueueWaitMs", maxQueueWaitNanos.get() / 1e6)
+                .put("avgHashMs", count == 0 ? 0.0 : hashNanos.sum() / 1e6 / count)
+                .put("maxHashMs", maxHashNanos.get() / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface HashTask<T> {
+        T run();
+    }
+
+    /**
+     * Raised when the hashing queue is full; callers should answer 503 immediately.
+     */
+    public static class SaturatedException extends RuntimeException {
+        public SaturatedException() {
+            super("Password hashing queue is full", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.itinerary.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process read cache for trips and per-user dashboard lists, shared by every
+ * MainVerticle so an edit handled on one event loop invalidates reads on all others.
+ *
+ * Cached values are treated as read-only; callers must not mutate what they get back.
+ * Each user carries a stamp that is bumped on every invalidation. Readers capture the
+ * stamp before going to Mongo and only populate the cache if it is unchanged, so a
+ * read racing with a write can never re-insert the pre-write document.
+ */
+public class TripCache implements Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "tripCache";
+
+    private final boolean enabled;
+    private final Cache<String, JsonObject> trips;
+    private final Cache<String, JsonArray> lists;
+    private final Cache<String, AtomicLong> stamps;
+
+    TripCache(boolean enabled, long maxTrips, long maxLists, Duration ttl) {
+        this.enabled = enabled;
+        this.trips = Caffeine.newBuilder()
+                .maximumSize(maxTrips)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.lists = Caffeine.newBuilder()
+                .maximumSize(maxLists)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Stamps must outlive the entries they guard
+        this.stamps = Caffeine.newBuilder()
+                .maximumSize(maxLists * 4)
+                .expireAfterAccess(ttl.multipliedBy(2))
+                .build();
+    }
+
+    /**
+     * Returns the cache shared by all verticles of this Vert.x instance, creating it
+     * from the "tripCache" section of the config on first use.
+     */
+    public static TripCache shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, TripCache> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        TripCache existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+
+        JsonObject cacheConfig = config.getJsonObject("tripCache", new JsonObject());
+        TripCache created = new TripCache(
+                cacheConfig.getBoolean("enabled", true),
+                cacheConfig.getLong("maxTrips", 10_000L),
+                cacheConfig.getLong("maxLists", 2_000L),
+                Duration.ofSeconds(cacheConfig.getLong("ttlSeconds", 60L)));
+
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        return existing != null ? existing : created;
+    }
+
+    public long stamp(String userId) {
+        return stamps.get(userId, k -> new AtomicLong()).get();
+    }
+
+    public JsonObject getTrip(String userId, String tripId) {
+        return enabled ? trips.getIfPresent(tripKey(userId, tripId)) : null;
+    }
+
+    public void putTrip(String userId, String tripId, JsonObject trip, long stamp) {
+        if (enabled && stamp(userId) == stamp) {
+            trips.put(tripKey(userId, tripId), trip);
+        }
+    }
+
+    public JsonArray getList(String userId, String view) {
+        return enabled ? lists.getIfPresent(listKey(userId, view)) : null;
+    }
+
+    public void putList(String userId, String view, JsonArray list, long stamp) {
+        if (enabled && stamp(userId) == stamp) {
+            lists.put(listKey(userId, view), list);
+        }
+    }
+
+    /**
+     * Drops the user's dashboard lists and, when tripId is given, the cached trip.
+     */
+    public void invalidate(String userId, String tripId) {
+        if (!enabled) {
+            return;
+        }
+        stamps.get(userId, k -> new AtomicLong()).incrementAndGet();
+        if (tripId != null) {
+            trips.invalidate(tripKey(userId, tripId));
+        }
+        lists.invalidate(listKey(userId, "full"));
+        lists.invalidate(listKey(userId, "summary"));
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("trips", toJson(trips.stats(), trips.estimatedSize()))
+                .put("lists", toJson(lists.stats(), lists.estimatedSize()));
+    }
+
+    private static JsonObject toJson(CacheStats stats, long size) {
+        return new JsonObject()
+                .put("size", size)
+                .put("hits", stats.hitCount())
+                .put("misses", stats.missCount())
+                .put("evictions", stats.evictionCount())
+                .put("hitRate", stats.hitRate());
+    }
+
+    private static String tripKey(String userId, String tripId) {
+        return userId + ':' + tripId;
+    }
+
+    private static String listKey(String userId, String view) {
+        return userId + ':' + view;
+    }
+}
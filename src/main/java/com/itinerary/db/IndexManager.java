@@ -0,0 +1,125 @@
+package com.itinerary.db;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.ext.mongo.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the indexes the handlers' access patterns rely on and checks, via
+ * explain, that the hot queries actually use them. createIndex is a no-op when an
+ * identical index already exists, so this is safe to run on every startup.
+ */
+public class IndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexManager.class);
+
+    private static final String TRIPS_COLLECTION = "trips";
+    private static final String USERS_COLLECTION = "users";
+    private static final String OUTBOX_COLLECTION = "email_outbox";
+    private static final String TOMBSTONES_COLLECTION = "trip_tombstones";
+    private static final String SAMPLE_ID = "000000000000000000000000";
+
+    private final MongoClient mongoClient;
+
+    public IndexManager(MongoClient mongoClient) {
+        this.mongoClient = mongoClient;
+    }
+
+    public Future<Void> ensureIndexes() {
+        List<Future<Void>> created = new ArrayList<>();
+
+        // Dashboard reads, delta sync and conditional-GET versions: filter by owner, order by updatedAt
+        created.add(create(TRIPS_COLLECTION, new JsonObject().put("userId", 1).put("updatedAt", 1),
+                new IndexOptions().name("userId_updatedAt")));
+        // Dashboard pages walk a user's trips in _id order
+        created.add(create(TRIPS_COLLECTION, new JsonObject().put("userId", 1).put("_id", 1),
+                new IndexOptions().name("userId_id")));
+        // Day and activity mutators match on trip, owner and day number
+        created.add(create(TRIPS_COLLECTION, new JsonObject().put("_id", 1).put("userId", 1).put("days.dayNumber", 1),
+                new IndexOptions().name("id_userId_dayNumber")));
+        // Daily digest: trips with a day on a given date, walked in userId order
+        created.add(create(TRIPS_COLLECTION, new JsonObject().put("days.date", 1).put("userId", 1),
+                new IndexOptions().name("dayDate_userId")));
+        // Delta sync lists a user's deletions since a watermark; purgeAt carries its own expiry time
+        created.add(create(TOMBSTONES_COLLECTION, new JsonObject().put("userId", 1).put("deletedAt", 1),
+                new IndexOptions().name("userId_deletedAt")));
+        created.add(create(TOMBSTONES_COLLECTION, new JsonObject().put("purgeAt", 1),
+                new IndexOptions().name("purgeAt_ttl").expireAfter(0L, TimeUnit.SECONDS)));
+        // Login lookup, and signup relies on the unique constraint to reject duplicates
+        created.add(create(USERS_COLLECTION, new JsonObject().put("username", 1),
+                new IndexOptions().name("username_unique").unique(true)));
+        // The outbox drainer polls for due pending records; sent ones expire after a week
+        created.add(create(OUTBOX_COLLECTION, new JsonObject().put("status", 1).put("nextAttemptAt", 1),
+                new IndexOptions().name("status_nextAttemptAt")));
+        created.add(create(OUTBOX_COLLECTION, new JsonObject().put("sentOn", 1),
+                new IndexOptions().name("sentOn_ttl").expireAfter(7L, TimeUnit.DAYS)));
+
+        return Future.all(created).mapEmpty();
+    }
+
+    private Future<Void> create(String collection, JsonObject key, IndexOptions options) {
+        return mongoClient.createIndexWithOptions(collection, key, options)
+                .onSuccess(v -> log.info("index={} collection={} status=ensured", options.getName(), collection))
+                .onFailure(err -> log.warn("index={} collection={} status=failed error=\"{}\"",
+                        options.getName(), collection, err.getMessage()));
+    }
+
+    /**
+     * Explains each hot query and logs a warning for any plan that scans the collection.
+     */
+    public Future<Void> verifyQueryPlans() {
+        List<Future<Void>> checks = new ArrayList<>();
+        checks.add(explain(TRIPS_COLLECTION, new JsonObject().put("userId", SAMPLE_ID)));
+        checks.add(explain(TRIPS_COLLECTION, new JsonObject()
+                .put("_id", SAMPLE_ID).put("userId", SAMPLE_ID).put("days.dayNumber", 1)));
+        checks.add(explain(USERS_COLLECTION, new JsonObject().put("username", "sample")));
+        return Future.join(checks).mapEmpty();
+    }
+
+    private Future<Void> explain(String collection, JsonObject filter) {
+        JsonObject command = new JsonObject()
+                .put("explain", new JsonObject().put("find", collection).put("filter", filter))
+                .put("verbosity", "queryPlanner");
+
+        return mongoClient.runCommand("explain", command)
+                .onSuccess(result -> {
+                    JsonObject plan = result.getJsonObject("queryPlanner", new JsonObject())
+                            .getJsonObject("winningPlan", new JsonObject());
+                    if (containsStage(plan, "COLLSCAN")) {
+                        log.warn("collection={} filter={} plan=COLLSCAN winningPlan={}", collection, filter, plan);
+                    }
+                })
+                .onFailure(err -> log.warn("collection={} filter={} explain=failed error=\"{}\"",
+                        collection, filter, err.getMessage()))
+                .mapEmpty();
+    }
+
+    private static boolean containsStage(Object node, String stage) {
+        if (node instanceof JsonObject) {
+            JsonObject object = (JsonObject) node;
+            if (stage.equals(object.getValue("stage"))) {
+                return true;
+            }
+            for (String field : object.fieldNames()) {
+                if (containsStage(object.getValue(field), stage)) {
+                    return true;
+                }
+            }
+        } else if (node instanceof JsonArray) {
+            for (Object element : (JsonArray) node) {
+                if (containsStage(element, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+package com.itinerary.db;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandListener;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the shared MongoClient from the "mongo" section of config.json.
+ *
+ * The driver settings are assembled here rather than passed as Vert.x config keys,
+ * because Vert.x ignores most pool keys once a connection_string is given, and
+ * because the pool and command listeners can only be attached through
+ * MongoClientSettings.
+ * Every wait is bounded: server selection, connecting, socket reads and waiting for
+ * a pooled connection all time out instead of hanging a handler indefinitely.
+ */
+public final class MongoClients {
+
+    private static final String DATA_SOURCE = "itinerary";
+
+    private MongoClients() {
+    }
+
+    public static MongoClient createShared(Vertx vertx, JsonObject mongo, PoolStats poolStats,
+                                           CommandListener commandListener) {
+        JsonObject pool = mongo.getJsonObject("pool", new JsonObject());
+        JsonObject timeouts = mongo.getJsonObject("timeouts", new JsonObject());
+
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongo.getString("connectionString", "mongodb://localhost:27017")))
+                .applyToConnectionPoolSettings(builder -> builder
+                        .maxSize(poolSize(mongo))
+                        .minSize(pool.getInteger("minSize", 10))
+                        .maxWaitTime(pool.getLong("waitQueueTimeoutMs", 2_000L), TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(pool.getLong("maxIdleTimeMs", 60_000L), TimeUnit.MILLISECONDS)
+                        .maxConnecting(pool.getInteger("maxConnecting", 4))
+                        .addConnectionPoolListener(poolStats))
+                .addCommandListener(commandListener)
+                .applyToClusterSettings(builder -> builder
+                        .serverSelectionTimeout(timeouts.getLong("serverSelectionMs", 3_000L), TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(builder -> builder
+                        .connectTimeout(timeouts.getInteger("connectMs", 2_000), TimeUnit.MILLISECONDS)
+                        .readTimeout(timeouts.getInteger("socketMs", 5_000), TimeUnit.MILLISECONDS))
+                .build();
+
+        JsonObject config = new JsonObject().put("db_name", mongo.getString("dbName", "itinerary_app"));
+        return MongoClient.createWithMongoSettings(vertx, config, DATA_SOURCE, settings);
+    }
+
+    public static int poolSize(JsonObject mongo) {
+        return mongo.getJsonObject("pool", new JsonObject()).getInteger("maxSize", 100);
+    }
+}
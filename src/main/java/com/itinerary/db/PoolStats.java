@@ -0,0 +1,111 @@
+package com.itinerary.db;
+
+import com.itinerary.metrics.LatencyHistogram;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool events from the Mongo driver, summarized as gauges: open and
+ * checked-out connections, utilization against maxSize, callers waiting for a
+ * connection, checkout failures (wait-queue timeouts) and checkout wait times.
+ *
+ * Shared like the client itself: only the first verticle's settings (and so its
+ * listener) reach the driver.
+ */
+public class PoolStats implements ConnectionPoolListener, Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "mongoPoolStats";
+
+    private final int maxSize;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder checkoutFailures = new LongAdder();
+    private final LatencyHistogram checkoutWait = new LatencyHistogram();
+    // Checkout start times, oldest first. Driver 4.8 events carry no operation id,
+    // but its wait queue is fair, so a finished checkout is matched with the
+    // oldest one still pending.
+    private final Queue<Long> checkoutStarts = new ConcurrentLinkedQueue<>();
+
+    PoolStats(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static PoolStats shared(Vertx vertx, int maxSize) {
+        LocalMap<String, PoolStats> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        PoolStats created = new PoolStats(maxSize);
+        PoolStats existing = map.putIfAbsent(SHARED_KEY, created);
+        return existing != null ? existing : created;
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        open.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waiting.incrementAndGet();
+        checkoutStarts.offer(System.nanoTime());
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waiting.decrementAndGet();
+        checkedOut.incrementAndGet();
+        recordWait();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waiting.decrementAndGet();
+        recordWait();
+        checkoutFailures.increment();
+    }
+
+    private void recordWait() {
+        Long started = checkoutStarts.poll();
+        if (started != null) {
+            checkoutWait.recordNanos(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    public JsonObject stats() {
+        int inUse = checkedOut.get();
+        return new JsonObject()
+                .put("maxSize", maxSize)
+                .put("open", open.get())
+                .put("checkedOut", inUse)
+                .put("utilization", maxSize > 0 ? inUse / (double) maxSize : 0.0)
+                .put("waiting", Math.max(0, waiting.get()))
+                .put("checkoutFailures", checkoutFailures.sum())
+                .put("checkoutWaitP50Ms", checkoutWait.quantileSeconds(0.5) * 1000)
+                .put("checkoutWaitP99Ms", checkoutWait.quantileSeconds(0.99) * 1000)
+                .put("checkoutWaitMaxMs", checkoutWait.quantileSeconds(1.0) * 1000);
+    }
+}
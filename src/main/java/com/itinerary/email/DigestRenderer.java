@@ -0,0 +1,84 @@
+package com.itinerary.email;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the daily digest from templates/digest.html.
+ *
+ * The template is parsed once and kept in Thymeleaf's template cache, so a run only
+ * pays for evaluating it. The engine is thread safe; render is called from the
+ * digest worker pool, never from an event loop.
+ */
+final class DigestRenderer {
+
+    private static final String TEMPLATE = "digest";
+
+    private final TemplateEngine engine;
+
+    DigestRenderer() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+
+        this.engine = new TemplateEngine();
+        engine.setTemplateResolver(resolver);
+    }
+
+    /**
+     * Parses the template up front (and fails fast if it is missing or malformed).
+     */
+    void precompile() {
+        render("warmup", "1970-01-01", List.of());
+    }
+
+    /**
+     * trips are as returned by TripRepository.streamByDayDate: userId, tripName and
+     * the single day that falls on date.
+     */
+    String render(String username, String date, List<JsonObject> trips) {
+        List<Map<String, Object>> model = new ArrayList<>(trips.size());
+        for (JsonObject trip : trips) {
+            JsonArray days = trip.getJsonArray("days", new JsonArray());
+            JsonObject day = days.isEmpty() ? null : days.getJsonObject(0);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("tripName", trip.getString("tripName", "Your trip"));
+            entry.put("dayNumber", day == null ? null : day.getInteger("dayNumber"));
+            entry.put("places", day == null ? List.of() : places(day.getJsonArray("places", new JsonArray())));
+            model.add(entry);
+        }
+
+        Context context = new Context();
+        context.setVariable("username", username);
+        context.setVariable("date", date);
+        context.setVariable("trips", model);
+        return engine.process(TEMPLATE, context);
+    }
+
+    /**
+     * Thymeleaf's expressions navigate Maps, not JsonObjects.
+     */
+    private static List<Map<String, Object>> places(JsonArray places) {
+        List<Map<String, Object>> maps = new ArrayList<>(places.size());
+        for (int i = 0; i < places.size(); i++) {
+            JsonObject place = places.getJsonObject(i);
+            if (place != null) {
+                maps.add(place.getMap());
+            }
+        }
+        return maps;
+    }
+}
@@ -0,0 +1,301 @@
+package com.itinerary.email;
+
+import com.itinerary.metrics.MetricsRegistry;
+import com.itinerary.repository.InMemoryTripRepository;
+import com.itinerary.repository.InMemoryUserRepository;
+import com.itinerary.repository.MongoTripRepository;
+import com.itinerary.repository.MongoUserRepository;
+import com.itinerary.repository.TripRepository;
+import com.itinerary.repository.UserRepository;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mongo.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends every user an HTML digest of tomorrow's plans, once a day at digest.runAt.
+ * Deploy exactly one instance.
+ *
+ * Trips with a day on tomorrow's date are read from a cursor in userId order, so a
+ * user's digest is complete as soon as the next user's first trip arrives and
+ * only one user's trips are held at a time. Each digest is rendered on a bounded
+ * worker pool and handed to the {@link EmailSender}. At most digest.maxInFlight
+ * digests are being looked up, rendered or sent at once; beyond that the cursor
+ * is paused, which keeps heap flat however many trips match.
+ *
+ * A run can also be started by sending a date (yyyy-MM-dd, or nothing for
+ * tomorrow) to the event bus address {@link #RUN_ADDRESS}; the reply is the run's
+ * figures.
+ */
+public class DigestVerticle extends AbstractVerticle {
+
+    public static final String RUN_ADDRESS = "itinerary.digest.run";
+
+    private static final Logger log = LoggerFactory.getLogger(DigestVerticle.class);
+    private static final int HEAP_SAMPLE_EVERY = 256;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private TripRepository trips;
+    private UserRepository users;
+    private EmailSender sender;
+    private DigestRenderer renderer;
+    private WorkerExecutor renderPool;
+    private String from;
+    private String subject;
+    private ZoneId zone;
+    private int batchSize;
+    private int maxInFlight;
+
+    private volatile Run running;
+    private final LongAdder rendered = new LongAdder();
+    private volatile JsonObject lastRun = new JsonObject();
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        JsonObject config = config();
+        JsonObject digest = config.getJsonObject("digest", new JsonObject());
+        this.from = config.getJsonObject("email", new JsonObject())
+                .getString("from", "Itinerary Planner <no-reply@itinerary.local>");
+        this.subject = digest.getString("subject", "Your plans for tomorrow");
+        this.zone = ZoneId.of(digest.getString("zone", "UTC"));
+        this.batchSize = digest.getInteger("batchSize", 500);
+        this.maxInFlight = digest.getInteger("maxInFlight", 64);
+        LocalTime runAt = LocalTime.parse(digest.getString("runAt", "18:00"));
+
+        MongoClient mongo = EmailStorage.mongo(vertx, config);
+        trips = mongo == null ? new InMemoryTripRepository(vertx) : new MongoTripRepository(mongo);
+        users = mongo == null ? new InMemoryUserRepository(vertx) : new MongoUserRepository(mongo);
+        sender = EmailSender.create(vertx, config.getJsonObject("email", new JsonObject()));
+        renderPool = vertx.createSharedWorkerExecutor("digest-render", digest.getInteger("workerPoolSize", 4));
+        renderer = new DigestRenderer();
+
+        MetricsRegistry.shared(vertx).registerComponent("digest", this::stats);
+
+        vertx.eventBus().<String>consumer(RUN_ADDRESS, message -> {
+            String date = message.body();
+            run(date == null || date.isEmpty() ? LocalDate.now(zone).plusDays(1) : LocalDate.parse(date))
+                    .onSuccess(message::reply)
+                    .onFailure(err -> message.fail(500, err.getMessage()));
+        });
+
+        renderPool.<Void>executeBlocking(() -> {
+            renderer.precompile();
+            return null;
+        }).onSuccess(v -> {
+            scheduleNext(runAt);
+            startPromise.complete();
+        }).onFailure(startPromise::fail);
+    }
+
+    @Override
+    public void stop() {
+        renderPool.close();
+    }
+
+    private void scheduleNext(LocalTime runAt) {
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        ZonedDateTime next = now.with(runAt);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        LocalDate date = next.toLocalDate().plusDays(1);
+        log.info("component=digest date={} scheduledAt={}", date, next);
+        vertx.setTimer(Math.max(1, Duration.between(now, next).toMillis()), id -> run(date)
+                .onComplete(ar -> scheduleNext(runAt)));
+    }
+
+    /**
+     * Digests for trips with a day on date. Only one run is active at a time.
+     */
+    Future<JsonObject> run(LocalDate date) {
+        if (running != null) {
+            return Future.failedFuture("A digest run is already in progress for " + running.date);
+        }
+        running = new Run(date.toString());
+        log.info("component=digest date={} status=started", date);
+        return running.start()
+                .onComplete(ar -> {
+                    JsonObject figures = running.figures();
+                    lastRun = figures;
+                    running = null;
+                    if (ar.succeeded()) {
+                        log.info("component=digest date={} status=finished {}", date, figures.encode());
+                    } else {
+                        log.warn("component=digest date={} status=failed error=\"{}\" {}", date,
+                                ar.cause().getMessage(), figures.encode());
+                    }
+                });
+    }
+
+    /**
+     * One pass over the cursor. Everything runs on this verticle's context, so the
+     * fields need no synchronization.
+     */
+    private final class Run {
+
+        final String date;
+        final long startedAt = System.nanoTime();
+        final Promise<JsonObject> done = Promise.promise();
+
+        ReadStream<JsonObject> cursor;
+        String userId;
+        List<JsonObject> userTrips = new ArrayList<>();
+        int inFlight;
+        boolean paused;
+        boolean ended;
+
+        long trips;
+        long digests;
+        long renders;
+        long sent;
+        long skipped;
+        long failed;
+        long peakHeap;
+
+        Run(String date) {
+            this.date = date;
+        }
+
+        Future<JsonObject> start() {
+            sampleHeap();
+            cursor = DigestVerticle.this.trips.streamByDayDate(date, batchSize);
+            cursor.exceptionHandler(done::tryFail);
+            cursor.endHandler(v -> {
+                flush();
+                ended = true;
+                finishIfIdle();
+            });
+            cursor.handler(this::onTrip);
+            return done.future();
+        }
+
+        private void onTrip(JsonObject trip) {
+            trips++;
+            String owner = trip.getString("userId");
+            if (userId != null && !userId.equals(owner)) {
+                flush();
+            }
+            userId = owner;
+            userTrips.add(trip);
+        }
+
+        private void flush() {
+            if (userId == null) {
+                return;
+            }
+            String owner = userId;
+            List<JsonObject> ownerTrips = userTrips;
+            userId = null;
+            userTrips = new ArrayList<>();
+
+            digests++;
+            inFlight++;
+            if (inFlight >= maxInFlight && !paused) {
+                paused = true;
+                cursor.pause();
+            }
+            send(owner, ownerTrips).onComplete(ar -> {
+                inFlight--;
+                if (ar.failed()) {
+                    failed++;
+                    log.warn("component=digest userId={} status=failed error=\"{}\"", owner, ar.cause().getMessage());
+                } else if (ar.result()) {
+                    sent++;
+                } else {
+                    skipped++;
+                }
+                if ((sent + skipped + failed) % HEAP_SAMPLE_EVERY == 0) {
+                    sampleHeap();
+                }
+                // Resume at half the limit so the cursor is not toggled on every completion
+                if (paused && inFlight <= maxInFlight / 2) {
+                    paused = false;
+                    cursor.resume();
+                }
+                finishIfIdle();
+            });
+        }
+
+        /**
+         * True once sent, false when the user has no email address.
+         */
+        private Future<Boolean> send(String owner, List<JsonObject> ownerTrips) {
+            return users.findById(owner).compose(user -> {
+                String to = user == null ? null : user.getString("email");
+                if (to == null) {
+                    return Future.succeededFuture(false);
+                }
+                String username = user.getString("username");
+                return renderPool.executeBlocking(() -> renderer.render(username, date, ownerTrips), false)
+                        .compose(html -> {
+                            rendered.increment();
+                            renders++;
+                            return sender.send(new MailMessage()
+                                    .setFrom(from)
+                                    .setTo(to)
+                                    .setSubject(subject)
+                                    .setHtml(html));
+                        })
+                        .map(true);
+            });
+        }
+
+        private void finishIfIdle() {
+            if (ended && inFlight == 0) {
+                sampleHeap();
+                done.tryComplete(figures());
+            }
+        }
+
+        private void sampleHeap() {
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+        }
+
+        JsonObject figures() {
+            double seconds = Math.max((System.nanoTime() - startedAt) / 1e9, 1e-9);
+            return new JsonObject()
+                    .put("date", date)
+                    .put("trips", trips)
+                    .put("digests", digests)
+                    .put("rendered", renders)
+                    .put("sent", sent)
+                    .put("skipped", skipped)
+                    .put("failed", failed)
+                    .put("seconds", seconds)
+                    .put("renderedPerSecond", renders / seconds)
+                    .put("peakHeapBytes", peakHeap);
+        }
+    }
+
+    JsonObject stats() {
+        JsonObject last = lastRun;
+        return new JsonObject()
+                .put("running", running != null ? 1 : 0)
+                .put("rendered", rendered.sum())
+                .put("lastRunTrips", last.getLong("trips", 0L))
+                .put("lastRunSent", last.getLong("sent", 0L))
+                .put("lastRunFailed", last.getLong("failed", 0L))
+                .put("lastRunSeconds", last.getDouble("seconds", 0.0))
+                .put("lastRunRenderedPerSecond", last.getDouble("renderedPerSecond", 0.0))
+                .put("lastRunPeakHeapBytes", last.getLong("peakHeapBytes", 0L))
+                .put("heapUsedBytes", memory.getHeapMemoryUsage().getUsed());
+    }
+}
@@ -0,0 +1,82 @@
+package com.itinerary.email;
+
+import com.itinerary.repository.OutboxRepository;
+import com.itinerary.repository.OutboxStatus;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * What handlers use to queue notifications. Each call appends to the outbox as
+ * part of the request, but the handler does not wait for it: the response never
+ * depends on mail, and delivery is left to OutboxDrainVerticle.
+ *
+ * Trip change notices are held back for email.coalesceSeconds so that a burst of
+ * edits to one trip goes out as a single message.
+ */
+public class EmailOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailOutbox.class);
+
+    static final String WELCOME = "welcome";
+    static final String TRIP_CHANGED = "tripChanged";
+
+    private final OutboxRepository outbox;
+    private final boolean enabled;
+    private final long coalesceMillis;
+
+    public EmailOutbox(OutboxRepository outbox, JsonObject config) {
+        JsonObject email = config.getJsonObject("email", new JsonObject());
+        this.outbox = outbox;
+        this.enabled = email.getBoolean("enabled", true);
+        this.coalesceMillis = email.getLong("coalesceSeconds", 30L) * 1000;
+    }
+
+    /**
+     * An outbox that drops everything, for wiring handlers without email.
+     */
+    public static EmailOutbox disabled() {
+        return new EmailOutbox(null, new JsonObject().put("email", new JsonObject().put("enabled", false)));
+    }
+
+    public void welcome(String to, String userId, String username) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        logFailure(outbox.append(record(WELCOME, to, userId, now, now).put("username", username)), WELCOME, userId);
+    }
+
+    /**
+     * Queues summary (e.g. "Added day 3") as a change to the trip; tripName may be null
+     * when the handler does not know it.
+     */
+    public void tripChanged(String to, String userId, String tripId, String tripName, String summary) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        JsonObject record = record(TRIP_CHANGED, to, userId, now, now + coalesceMillis)
+                .put("tripId", tripId)
+                .put("tripName", tripName);
+        JsonObject change = new JsonObject().put("summary", summary).put("at", now);
+        logFailure(outbox.appendChange(record, change), TRIP_CHANGED, userId);
+    }
+
+    private static JsonObject record(String type, String to, String userId, long now, long sendAt) {
+        return new JsonObject()
+                .put("type", type)
+                .put("to", to)
+                .put("userId", userId)
+                .put("status", OutboxStatus.PENDING)
+                .put("attempts", 0)
+                .put("createdAt", now)
+                .put("nextAttemptAt", sendAt);
+    }
+
+    private static void logFailure(Future<Void> append, String type, String userId) {
+        append.onFailure(err -> log.warn("component=emailOutbox type={} userId={} status=append_failed error=\"{}\"",
+                type, userId, err.getMessage()));
+    }
+}
@@ -0,0 +1,25 @@
+package com.itinerary.email;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mail.MailMessage;
+
+/**
+ * Delivers one rendered message. Implementations must not block the calling event loop.
+ */
+public interface EmailSender {
+
+    Future<Void> send(MailMessage message);
+
+    /**
+     * The sender selected by email.transport: "smtp" (default) or "log", which only
+     * writes a log line per message.
+     */
+    static EmailSender create(Vertx vertx, JsonObject email) {
+        if ("log".equals(email.getString("transport", "smtp"))) {
+            return new LoggingEmailSender();
+        }
+        return new SmtpEmailSender(vertx, email.getJsonObject("smtp", new JsonObject()));
+    }
+}
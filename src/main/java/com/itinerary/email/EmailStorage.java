@@ -0,0 +1,31 @@
+package com.itinerary.email;
+
+import com.itinerary.db.MongoClients;
+import com.itinerary.db.PoolStats;
+import com.itinerary.metrics.MetricsRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+
+/**
+ * Storage access for the background email verticles.
+ */
+final class EmailStorage {
+
+    private EmailStorage() {
+    }
+
+    /**
+     * The MongoClient shared with the MainVerticles (same pool and settings), or
+     * null when storage.engine is "memory".
+     */
+    static MongoClient mongo(Vertx vertx, JsonObject config) {
+        String engine = config.getJsonObject("storage", new JsonObject()).getString("engine", "mongo");
+        if ("memory".equals(engine)) {
+            return null;
+        }
+        JsonObject mongo = config.getJsonObject("mongo", new JsonObject());
+        return MongoClients.createShared(vertx, mongo, PoolStats.shared(vertx, MongoClients.poolSize(mongo)),
+                MetricsRegistry.shared(vertx).mongoCommandListener());
+    }
+}
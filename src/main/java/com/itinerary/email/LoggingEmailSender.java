@@ -0,0 +1,20 @@
+package com.itinerary.email;
+
+import io.vertx.core.Future;
+import io.vertx.ext.mail.MailMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends nothing; for development without an SMTP server.
+ */
+class LoggingEmailSender implements EmailSender {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingEmailSender.class);
+
+    @Override
+    public Future<Void> send(MailMessage message) {
+        log.info("component=email transport=log to={} subject=\"{}\"", message.getTo(), message.getSubject());
+        return Future.succeededFuture();
+    }
+}
@@ -0,0 +1,153 @@
+package com.itinerary.email;
+
+import com.itinerary.metrics.MetricsRegistry;
+import com.itinerary.repository.InMemoryOutboxRepository;
+import com.itinerary.repository.MongoOutboxRepository;
+import com.itinerary.repository.OutboxRepository;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drains the email outbox. Deploy exactly one instance: it claims due records in
+ * batches of email.batchSize, folds records for the same recipient and trip into
+ * one message, and sends the messages of a batch concurrently over the pooled
+ * sender. A failed message is retried with exponential backoff and full jitter,
+ * and dead-lettered after email.maxAttempts.
+ *
+ * Everything here is asynchronous, so the verticle runs on an ordinary event loop
+ * and never holds up request handling.
+ */
+public class OutboxDrainVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDrainVerticle.class);
+
+    private OutboxRepository outbox;
+    private EmailSender sender;
+    private String from;
+    private int batchSize;
+    private int maxAttempts;
+    private long retryBaseMillis;
+    private long retryMaxMillis;
+    private boolean draining;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private volatile int lastBatch;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        JsonObject config = config();
+        JsonObject email = config.getJsonObject("email", new JsonObject());
+        this.from = email.getString("from", "Itinerary Planner <no-reply@itinerary.local>");
+        this.batchSize = email.getInteger("batchSize", 100);
+        this.maxAttempts = email.getInteger("maxAttempts", 8);
+        this.retryBaseMillis = email.getLong("retryBaseMs", 5_000L);
+        this.retryMaxMillis = email.getLong("retryMaxMs", 3_600_000L);
+        long pollMillis = email.getLong("pollIntervalMs", 1_000L);
+
+        MongoClient mongo = EmailStorage.mongo(vertx, config);
+        outbox = mongo == null ? new InMemoryOutboxRepository(vertx) : new MongoOutboxRepository(mongo);
+        sender = EmailSender.create(vertx, email);
+
+        MetricsRegistry.shared(vertx).registerComponent("email_outbox", this::stats);
+
+        // Storage being down must not stop the server; claims are released on a later start
+        outbox.releaseClaims()
+                .onFailure(err -> log.warn("component=emailOutbox status=release_failed error=\"{}\"", err.getMessage()))
+                .onComplete(v -> {
+                    vertx.setPeriodic(pollMillis, id -> drain());
+                    log.info("component=emailOutbox transport={} batchSize={} status=started",
+                            email.getString("transport", "smtp"), batchSize);
+                    startPromise.complete();
+                });
+    }
+
+    private void drain() {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        outbox.claimDue(System.currentTimeMillis(), batchSize)
+                .compose(this::sendBatch)
+                .onComplete(ar -> {
+                    draining = false;
+                    if (ar.failed()) {
+                        log.warn("component=emailOutbox status=drain_failed error=\"{}\"", ar.cause().getMessage());
+                    } else if (ar.result() == batchSize) {
+                        // A full batch means more is due; do not wait for the next tick
+                        drain();
+                    }
+                });
+    }
+
+    private Future<Integer> sendBatch(List<JsonObject> claimed) {
+        lastBatch = claimed.size();
+        Map<String, List<JsonObject>> messages = new LinkedHashMap<>();
+        for (JsonObject record : claimed) {
+            messages.computeIfAbsent(OutboxMessages.coalescingKey(record), k -> new ArrayList<>()).add(record);
+        }
+        coalesced.add(claimed.size() - messages.size());
+
+        List<Future<Void>> outcomes = new ArrayList<>(messages.size());
+        for (List<JsonObject> records : messages.values()) {
+            outcomes.add(send(records));
+        }
+        return Future.join(outcomes).transform(ar -> Future.succeededFuture(claimed.size()));
+    }
+
+    private Future<Void> send(List<JsonObject> records) {
+        List<String> ids = new ArrayList<>(records.size());
+        int attempts = 0;
+        for (JsonObject record : records) {
+            ids.add(record.getString("_id"));
+            attempts = Math.max(attempts, record.getInteger("attempts", 0));
+        }
+        int attempt = attempts + 1;
+
+        return sender.send(OutboxMessages.build(from, records)).transform(ar -> {
+            if (ar.succeeded()) {
+                sent.increment();
+                return outbox.markSent(ids, System.currentTimeMillis());
+            }
+            String error = String.valueOf(ar.cause().getMessage());
+            if (attempt >= maxAttempts) {
+                deadLettered.increment();
+                log.warn("component=emailOutbox ids={} attempts={} status=dead_lettered error=\"{}\"", ids, attempt, error);
+                return outbox.deadLetter(ids, error);
+            }
+            retried.increment();
+            return outbox.retry(ids, System.currentTimeMillis() + backoff(attempt), error);
+        });
+    }
+
+    /**
+     * Full jitter: a random delay up to base * 2^(attempt - 1), capped at retryMaxMs.
+     */
+    private long backoff(int attempt) {
+        long ceiling = retryBaseMillis << Math.min(attempt - 1, 20);
+        return ThreadLocalRandom.current().nextLong(Math.min(ceiling, retryMaxMillis) + 1);
+    }
+
+    JsonObject stats() {
+        return new JsonObject()
+                .put("sent", sent.sum())
+                .put("coalesced", coalesced.sum())
+                .put("retried", retried.sum())
+                .put("deadLettered", deadLettered.sum())
+                .put("lastBatch", lastBatch);
+    }
+}
@@ -0,0 +1,67 @@
+package com.itinerary.email;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mail.MailMessage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Turns outbox records into plain-text messages.
+ */
+final class OutboxMessages {
+
+    private OutboxMessages() {
+    }
+
+    /**
+     * One message for records that share a recipient and, for trip changes, a trip.
+     * Their changes are listed in the order they were made.
+     */
+    static MailMessage build(String from, List<JsonObject> records) {
+        JsonObject first = records.get(0);
+        MailMessage message = new MailMessage().setFrom(from).setTo(first.getString("to"));
+
+        if (EmailOutbox.WELCOME.equals(first.getString("type"))) {
+            return message
+                    .setSubject("Welcome to Itinerary Planner")
+                    .setText("Hi " + first.getString("username", "there") + ",\n\n"
+                            + "Your account is ready. Create your first trip from the dashboard.\n");
+        }
+
+        String tripName = null;
+        List<JsonObject> changes = new ArrayList<>();
+        for (JsonObject record : records) {
+            if (record.getString("tripName") != null) {
+                tripName = record.getString("tripName");
+            }
+            JsonArray recorded = record.getJsonArray("changes", new JsonArray());
+            for (int i = 0; i < recorded.size(); i++) {
+                changes.add(recorded.getJsonObject(i));
+            }
+        }
+        changes.sort(Comparator.comparingLong(change -> change.getLong("at", 0L)));
+
+        StringBuilder text = new StringBuilder()
+                .append(tripName != null ? "Your trip \"" + tripName + "\"" : "One of your trips")
+                .append(" was changed:\n\n");
+        for (JsonObject change : changes) {
+            text.append("  - ").append(change.getString("summary")).append('\n');
+        }
+        return message
+                .setSubject(tripName != null ? "Trip updated: " + tripName : "Trip updated")
+                .setText(text.toString());
+    }
+
+    /**
+     * Records with the same key are sent as one message.
+     */
+    static String coalescingKey(JsonObject record) {
+        if (EmailOutbox.TRIP_CHANGED.equals(record.getString("type"))) {
+            return record.getString("to") + '|' + record.getString("tripId");
+        }
+        return record.getString("_id");
+    }
+}
@@ -0,0 +1,52 @@
+package com.itinerary.email;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mail.LoginOption;
+import io.vertx.ext.mail.MailClient;
+import io.vertx.ext.mail.MailConfig;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.StartTLSOptions;
+
+/**
+ * Sends through the Vert.x mail client. Connections are pooled and kept alive
+ * between messages, and commands are pipelined when the server advertises
+ * PIPELINING, so a batch costs a few round trips per message rather than one per
+ * SMTP command. The pool is shared under one name, so every sender uses the same
+ * connections.
+ */
+class SmtpEmailSender implements EmailSender {
+
+    private static final String POOL_NAME = "itinerary-mail";
+
+    private final MailClient mailClient;
+
+    SmtpEmailSender(Vertx vertx, JsonObject smtp) {
+        MailConfig config = new MailConfig()
+                .setHostname(smtp.getString("host", "localhost"))
+                .setPort(smtp.getInteger("port", 1025))
+                .setSsl(smtp.getBoolean("ssl", false))
+                .setStarttls(StartTLSOptions.valueOf(smtp.getString("starttls", "OPTIONAL")))
+                .setMaxPoolSize(smtp.getInteger("maxPoolSize", 4))
+                .setKeepAlive(true)
+                .setPipelining(smtp.getBoolean("pipelining", true));
+        config.setConnectTimeout(smtp.getInteger("connectTimeoutMs", 5_000));
+
+        String username = smtp.getString("username");
+        if (username != null) {
+            config.setUsername(username)
+                    .setPassword(smtp.getString("password"))
+                    .setLogin(LoginOption.REQUIRED);
+        } else {
+            config.setLogin(LoginOption.DISABLED);
+        }
+
+        this.mailClient = MailClient.createShared(vertx, config, POOL_NAME);
+    }
+
+    @Override
+    public Future<Void> send(MailMessage message) {
+        return mailClient.sendMail(message).mapEmpty();
+    }
+}
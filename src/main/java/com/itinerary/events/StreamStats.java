@@ -0,0 +1,46 @@
+package com.itinerary.events;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters for trip change events, shared by every MainVerticle.
+ */
+public class StreamStats implements Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "streamStats";
+
+    final AtomicLong open = new AtomicLong();
+    final LongAdder opened = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder published = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+
+    public static StreamStats shared(Vertx vertx) {
+        LocalMap<String, StreamStats> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        StreamStats existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+        StreamStats created = new StreamStats();
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        return existing != null ? existing : created;
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+                .put("connections", open.get())
+                .put("opened", opened.sum())
+                .put("rejected", rejected.sum())
+                .put("droppedSlow", dropped.sum())
+                .put("published", published.sum())
+                .put("delivered", delivered.sum());
+    }
+}
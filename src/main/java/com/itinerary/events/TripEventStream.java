@@ -0,0 +1,136 @@
+package com.itinerary.events;
+
+import com.itinerary.admission.AdmissionController;
+import com.itinerary.handlers.ErrorResponse;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GET /api/trips/stream: server-sent events for the caller's trips, so clients can
+ * refetch what changed instead of polling /api/dashboard.
+ *
+ * Each MainVerticle owns one instance. It consumes {@link TripEvents#ADDRESS} and
+ * writes to the streams opened on its own event loop, so the connection map needs
+ * no locking. Every stream has a bounded write queue; a client that falls so far
+ * behind that the queue is full is disconnected rather than buffered for, and
+ * can reconnect and resync.
+ */
+public class TripEventStream {
+
+    private static final Buffer OPENING = Buffer.buffer("retry: 5000\n\n");
+    private static final Buffer HEARTBEAT = Buffer.buffer(": keepalive\n\n");
+
+    private final Map<String, Set<Connection>> byUser = new HashMap<>();
+    private final StreamStats stats;
+    private final int maxPerUser;
+    private final int maxBufferBytes;
+
+    public TripEventStream(Vertx vertx, JsonObject config) {
+        JsonObject sse = config.getJsonObject("sse", new JsonObject());
+        this.stats = StreamStats.shared(vertx);
+        this.maxPerUser = sse.getInteger("maxPerUser", 5);
+        this.maxBufferBytes = sse.getInteger("maxBufferBytes", 64 * 1024);
+
+        vertx.eventBus().<JsonObject>consumer(TripEvents.ADDRESS, message -> deliver(message.body()));
+        // Keeps proxies from closing idle streams, and finds dead or stalled clients
+        vertx.setPeriodic(sse.getLong("heartbeatSeconds", 25L) * 1000, id -> heartbeat());
+    }
+
+    public void stream(RoutingContext ctx) {
+        String userId = ctx.user().principal().getString("sub");
+        Set<Connection> connections = byUser.computeIfAbsent(userId, k -> new LinkedHashSet<>());
+        if (connections.size() >= maxPerUser) {
+            stats.rejected.increment();
+            ctx.response()
+                    .setStatusCode(429)
+                    .putHeader("content-type", "application/json")
+                    .end(ErrorResponse.buffer(429, "Too many open event streams"));
+            return;
+        }
+
+        // The stream stays open for as long as the client wants; it must not hold an admission slot
+        AdmissionController.leaveInFlight(ctx);
+
+        HttpServerResponse response = ctx.response()
+                .setChunked(true)
+                .putHeader("content-type", "text/event-stream")
+                .putHeader("cache-control", "no-cache")
+                .putHeader("content-encoding", "identity") // compression would hold events back
+                .putHeader("x-accel-buffering", "no");
+        response.setWriteQueueMaxSize(maxBufferBytes);
+
+        Connection connection = new Connection(userId, response);
+        connections.add(connection);
+        stats.open.incrementAndGet();
+        stats.opened.increment();
+        response.closeHandler(v -> remove(connection));
+        response.write(OPENING);
+    }
+
+    private void deliver(JsonObject event) {
+        Set<Connection> connections = byUser.get(event.getString("userId"));
+        if (connections == null) {
+            return;
+        }
+        JsonObject payload = event.copy();
+        payload.remove("userId");
+        Buffer frame = Buffer.buffer("event: trip\ndata: ").appendString(payload.encode()).appendString("\n\n");
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (connection.send(frame)) {
+                stats.delivered.increment();
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Set<Connection> connections : new ArrayList<>(byUser.values())) {
+            for (Connection connection : new ArrayList<>(connections)) {
+                connection.send(HEARTBEAT);
+            }
+        }
+    }
+
+    private void remove(Connection connection) {
+        Set<Connection> connections = byUser.get(connection.userId);
+        if (connections != null && connections.remove(connection)) {
+            stats.open.decrementAndGet();
+            if (connections.isEmpty()) {
+                byUser.remove(connection.userId);
+            }
+        }
+    }
+
+    private final class Connection {
+
+        final String userId;
+        final HttpServerResponse response;
+
+        Connection(String userId, HttpServerResponse response) {
+            this.userId = userId;
+            this.response = response;
+        }
+
+        /**
+         * False if the client was too slow and has been disconnected.
+         */
+        boolean send(Buffer frame) {
+            if (response.writeQueueFull()) {
+                stats.dropped.increment();
+                remove(this);
+                response.reset();
+                return false;
+            }
+            response.write(frame);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.itinerary.events;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Publishes a compact event for every successful trip mutation on the event bus,
+ * where each MainVerticle's {@link TripEventStream} picks it up. Publishing is fire
+ * and forget: with no open streams the event is simply dropped.
+ */
+public class TripEvents {
+
+    public static final String ADDRESS = "itinerary.trips.changed";
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+
+    private final EventBus eventBus;
+    private final StreamStats stats;
+
+    public TripEvents(Vertx vertx) {
+        this.eventBus = vertx.eventBus();
+        this.stats = StreamStats.shared(vertx);
+    }
+
+    /**
+     * dayNumber is the day the change was made to, or null for trip-level changes.
+     * The event carries no timestamp: the handlers do not know the updatedAt the
+     * repository stored, and any other clock reading would not match the trip's
+     * ETag or a /api/trips/changes watermark.
+     */
+    public void publish(String userId, String tripId, String kind, Integer dayNumber) {
+        JsonObject event = new JsonObject()
+                .put("userId", userId)
+                .put("tripId", tripId)
+                .put("kind", kind);
+        if (dayNumber != null) {
+            event.put("dayNumber", dayNumber);
+        }
+        stats.published.increment();
+        eventBus.publish(ADDRESS, event);
+    }
+}
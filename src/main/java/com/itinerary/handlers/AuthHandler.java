@@ -1,21 +1,45 @@
 package com.itinerary.handlers;
 
+import com.itinerary.auth.PasswordHasher;
+import com.itinerary.email.EmailOutbox;
+import com.itinerary.repository.DuplicateKeyException;
+import com.itinerary.repository.UserRepository;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.User;
 import io.vertx.ext.auth.jwt.JWTAuth;
-import io.vertx.ext.mongo.MongoClient;
 import io.vertx.ext.web.RoutingContext;
-import org.mindrot.jbcrypt.BCrypt;
 
 public class AuthHandler {
 
-    private final MongoClient mongoClient;
+    private final UserRepository users;
     private final JWTAuth jwtAuth;
-    private static final String USERS_COLLECTION = "users";
+    private final PasswordHasher passwordHasher;
+    private final EmailOutbox emailOutbox;
 
-    public AuthHandler(MongoClient mongoClient, JWTAuth jwtAuth) {
-        this.mongoClient = mongoClient;
+    public AuthHandler(UserRepository users, JWTAuth jwtAuth, PasswordHasher passwordHasher, EmailOutbox emailOutbox) {
+        this.users = users;
         this.jwtAuth = jwtAuth;
+        this.passwordHasher = passwordHasher;
+        this.emailOutbox = emailOutbox;
+    }
+
+    private void hashingFailed(RoutingContext ctx, Throwable cause) {
+        if (cause instanceof PasswordHasher.SaturatedException) {
+            ctx.response()
+                    .setStatusCode(503)
+                    .putHeader("content-type", "application/json")
+                    .putHeader("Retry-After", "1")
+                    .end(new JsonObject()
+                            .put("error", "Server busy, please retry")
+                            .encode());
+        } else {
+            ctx.response()
+                    .setStatusCode(500)
+                    .putHeader("content-type", "application/json")
+                    .end(new JsonObject()
+                            .put("error", "Password processing failed")
+                            .encode());
+        }
     }
 
     public void signup(RoutingContext ctx) {
@@ -33,13 +57,47 @@ public class AuthHandler {
 
         String username = body.getString("username");
         String password = body.getString("password");
+        String email = body.getString("email"); // Optional; enables notification emails
+
+        if (email != null && (email.indexOf('@') < 1 || email.length() > 254)) {
+            ctx.response()
+                    .setStatusCode(400)
+                    .putHeader("content-type", "application/json")
+                    .end(new JsonObject()
+                            .put("error", "Invalid email address")
+                            .encode());
+            return;
+        }
 
-        // Check if user already exists
-        JsonObject query = new JsonObject().put("username", username);
+        // Create new user; hashing runs on the bcrypt pool, not the event loop.
+        // The repository rejects duplicate usernames, so no lookup is needed first.
+        passwordHasher.hash(password).onComplete(hashResult -> {
+            if (hashResult.failed()) {
+                hashingFailed(ctx, hashResult.cause());
+                return;
+            }
 
-        mongoClient.findOne(USERS_COLLECTION, query, null, result -> {
-            if (result.succeeded()) {
-                if (result.result() != null) {
+            JsonObject newUser = new JsonObject()
+                    .put("username", username)
+                    .put("password", hashResult.result())
+                    .put("createdAt", System.currentTimeMillis());
+            if (email != null) {
+                newUser.put("email", email);
+            }
+
+            users.insert(newUser).onComplete(insertResult -> {
+                if (insertResult.succeeded()) {
+                    if (email != null) {
+                        emailOutbox.welcome(email, insertResult.result(), username);
+                    }
+                    ctx.response()
+                            .setStatusCode(201)
+                            .putHeader("content-type", "application/json")
+                            .end(new JsonObject()
+                                    .put("message", "User created successfully")
+                                    .put("userId", insertResult.result())
+                                    .encode());
+                } else if (insertResult.cause() instanceof DuplicateKeyException) {
                     // User already exists
                     ctx.response()
                             .setStatusCode(409)
@@ -48,41 +106,14 @@ public class AuthHandler {
                                     .put("error", "Username already exists")
                                     .encode());
                 } else {
-                    // Create new user
-                    String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-
-                    JsonObject newUser = new JsonObject()
-                            .put("username", username)
-                            .put("password", hashedPassword)
-                            .put("createdAt", System.currentTimeMillis());
-
-                    mongoClient.insert(USERS_COLLECTION, newUser, insertResult -> {
-                        if (insertResult.succeeded()) {
-                            ctx.response()
-                                    .setStatusCode(201)
-                                    .putHeader("content-type", "application/json")
-                                    .end(new JsonObject()
-                                            .put("message", "User created successfully")
-                                            .put("userId", insertResult.result())
-                                            .encode());
-                        } else {
-                            ctx.response()
-                                    .setStatusCode(500)
-                                    .putHeader("content-type", "application/json")
-                                    .end(new JsonObject()
-                                            .put("error", "Failed to create user")
-                                            .encode());
-                        }
-                    });
+                    ctx.response()
+                            .setStatusCode(500)
+                            .putHeader("content-type", "application/json")
+                            .end(new JsonObject()
+                                    .put("error", "Failed to create user")
+                                    .encode());
                 }
-            } else {
-                ctx.response()
-                        .setStatusCode(500)
-                        .putHeader("content-type", "application/json")
-                        .end(new JsonObject()
-                                .put("error", "Database error")
-                                .encode());
-            }
+            });
         });
     }
 
@@ -103,40 +134,44 @@ public class AuthHandler {
         String password = body.getString("password");
 
         // Find user in database
-        JsonObject query = new JsonObject().put("username", username);
-
-        mongoClient.findOne(USERS_COLLECTION, query, null, result -> {
+        users.findByUsername(username).onComplete(result -> {
             if (result.succeeded()) {
                 JsonObject user = result.result();
 
-                if (user != null && BCrypt.checkpw(password, user.getString("password"))) {
-                    // Password matches, generate JWT token
-                    JsonObject claims = new JsonObject()
-                            .put("sub", user.getString("_id"))
-                            .put("username", username)
-                            .put("iat", System.currentTimeMillis() / 1000)
-                            .put("exp", (System.currentTimeMillis() / 1000) + 3600); // 1 hour expiry
+                if (user == null) {
+                    invalidCredentials(ctx);
+                    return;
+                }
 
-                    String token = jwtAuth.generateToken(claims);
+                passwordHasher.verify(password, user.getString("password")).onComplete(verifyResult -> {
+                    if (verifyResult.failed()) {
+                        hashingFailed(ctx, verifyResult.cause());
+                    } else if (verifyResult.result()) {
+                        // Password matches, generate JWT token
+                        JsonObject claims = new JsonObject()
+                                .put("sub", user.getString("_id"))
+                                .put("username", username)
+                                .put("iat", System.currentTimeMillis() / 1000)
+                                .put("exp", (System.currentTimeMillis() / 1000) + 3600); // 1 hour expiry
+                        if (user.getString("email") != null) {
+                            claims.put("email", user.getString("email")); // Where trip change notices go
+                        }
 
-                    ctx.response()
-                            .setStatusCode(200)
-                            .putHeader("content-type", "application/json")
-                            .end(new JsonObject()
-                                    .put("token", token)
-                                    .put("userId", user.getString("_id"))
-                                    .put("username", username)
-                                    .put("message", "Login successful")
-                                    .encode());
-                } else {
-                    // Invalid credentials
-                    ctx.response()
-                            .setStatusCode(401)
-                            .putHeader("content-type", "application/json")
-                            .end(new JsonObject()
-                                    .put("error", "Invalid username or password")
-                                    .encode());
-                }
+                        String token = jwtAuth.generateToken(claims);
+
+                        ctx.response()
+                                .setStatusCode(200)
+                                .putHeader("content-type", "application/json")
+                                .end(new JsonObject()
+                                        .put("token", token)
+                                        .put("userId", user.getString("_id"))
+                                        .put("username", username)
+                                        .put("message", "Login successful")
+                                        .encode());
+                    } else {
+                        invalidCredentials(ctx);
+                    }
+                });
             } else {
                 ctx.response()
                         .setStatusCode(500)
@@ -147,4 +182,13 @@ public class AuthHandler {
             }
         });
     }
-}
\ No newline at end of file
+
+    private void invalidCredentials(RoutingContext ctx) {
+        ctx.response()
+                .setStatusCode(401)
+                .putHeader("content-type", "application/json")
+                .end(new JsonObject()
+                        .put("error", "Invalid username or password")
+                        .encode());
+    }
+}
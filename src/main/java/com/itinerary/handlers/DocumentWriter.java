@@ -0,0 +1,194 @@
+package com.itinerary.handlers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.EncodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes response bodies from the stored documents straight into a Buffer with a
+ * Jackson streaming generator, for JSON or any binary format whose factory is
+ * passed in. Envelopes are written field by field, so no wrapper JsonObject or
+ * JsonArray, String or char[] copy of the body is made; the generator's scratch
+ * buffers are recycled per thread by Jackson itself. The target Buffer is a
+ * plain heap buffer because Vert.x never releases buffers handed to end().
+ */
+final class DocumentWriter {
+
+    static final JsonFactory JSON = new JsonFactory();
+
+    // Initial capacity per list element: a two-week trip is a few KB of JSON, a
+    // dashboard summary a couple of hundred bytes. The buffer grows past either.
+    static final int TRIP_SIZE_HINT = 2048;
+    static final int SUMMARY_SIZE_HINT = 256;
+    private static final int MAX_SIZE_HINT = 1 << 20;
+    private static final int ERROR_SIZE_HINT = 128;
+
+    private DocumentWriter() {
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * {"field": value}, e.g. {"trip": {...}} or {"trips": [...]} of full trips.
+     */
+    static Buffer envelope(JsonFactory factory, String field, Object value) {
+        return envelope(factory, field, value, TRIP_SIZE_HINT);
+    }
+
+    /**
+     * As above, sizing the buffer at elementSizeHint bytes per element of a list.
+     */
+    static Buffer envelope(JsonFactory factory, String field, Object value, int elementSizeHint) {
+        return write(factory, sizeHint(value, elementSizeHint), generator -> {
+            generator.writeStartObject();
+            generator.writeFieldName(field);
+            writeValue(generator, value);
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * {"nextCursor": ..., "trips": [...]}; nextCursor is left out when null.
+     */
+    static Buffer page(JsonFactory factory, List<?> trips, String nextCursor, int elementSizeHint) {
+        return write(factory, sizeHint(trips, elementSizeHint), generator -> {
+            generator.writeStartObject();
+            if (nextCursor != null) {
+                generator.writeStringField("nextCursor", nextCursor);
+            }
+            generator.writeFieldName("trips");
+            writeArray(generator, trips);
+            generator.writeEndObject();
+        });
+    }
+
+    static Buffer document(JsonFactory factory, JsonObject body) {
+        return write(factory, TRIP_SIZE_HINT, generator -> writeValue(generator, body));
+    }
+
+    /**
+     * The JSON ErrorResponse body without building its JsonObject, plus
+     * {"field": details} when field is not null.
+     */
+    static Buffer error(int code, String message, String field, Object details) {
+        return write(JSON, ERROR_SIZE_HINT, generator -> {
+            generator.writeStartObject();
+            generator.writeBooleanField("error", true);
+            generator.writeNumberField("code", code);
+            generator.writeStringField("message", message);
+            generator.writeNumberField("timestamp", System.currentTimeMillis());
+            if (field != null) {
+                generator.writeFieldName(field);
+                writeValue(generator, details);
+            }
+            generator.writeEndObject();
+        });
+    }
+
+    private static Buffer write(JsonFactory factory, int sizeHint, Body body) {
+        Buffer buffer = Buffer.buffer(sizeHint);
+        try (JsonGenerator generator = factory.createGenerator(new BufferOutputStream(buffer))) {
+            body.write(generator);
+        } catch (IOException e) {
+            throw new EncodeException("Failed to encode response: " + e.getMessage(), e);
+        }
+        return buffer;
+    }
+
+    private static int sizeHint(Object value, int elementSizeHint) {
+        int elements = value instanceof List ? ((List<?>) value).size()
+                : value instanceof JsonArray ? ((JsonArray) value).size() : 1;
+        return (int) Math.min(MAX_SIZE_HINT, Math.max(1, elements) * (long) elementSizeHint);
+    }
+
+    // Walks the same value types JsonObject holds, reading the backing maps and lists
+    // directly so no JsonObject/JsonArray wrappers are created along the way
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof JsonObject) {
+            writeObject(generator, ((JsonObject) value).getMap());
+        } else if (value instanceof Map) {
+            writeObject(generator, (Map<?, ?>) value);
+        } else if (value instanceof JsonArray) {
+            writeArray(generator, ((JsonArray) value).getList());
+        } else if (value instanceof List) {
+            writeArray(generator, (List<?>) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).longValue());
+        } else {
+            // Rare types (Instant, binary, enums): round-trip them through the Vert.x
+            // codec so they come out exactly as JsonObject.encode() would write them
+            writeValue(generator, Json.decodeValue(Json.encode(value)));
+        }
+    }
+
+    private static void writeObject(JsonGenerator generator, Map<?, ?> map) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            generator.writeFieldName(String.valueOf(entry.getKey()));
+            writeValue(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeArray(JsonGenerator generator, List<?> list) throws IOException {
+        generator.writeStartArray();
+        for (Object item : list) {
+            writeValue(generator, item);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Appends whatever the generator flushes to the Buffer, growing it as needed.
+     */
+    private static final class BufferOutputStream extends OutputStream {
+
+        private final Buffer buffer;
+
+        BufferOutputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.appendBytes(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.itinerary.handlers;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Strong entity tags for trip reads. A trip's tag is derived from its _id and
+ * updatedAt; a dashboard's tag from the number of trips and the max and sum of their
+ * updatedAt values, which changes on every create, update and delete.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String forTrip(String tripId, long updatedAt) {
+        return "\"" + tripId + "-" + Long.toHexString(updatedAt) + "\"";
+    }
+
+    static String forTrip(JsonObject trip) {
+        return forTrip(trip.getString("_id"), trip.getLong("updatedAt", 0L));
+    }
+
+    static String forDashboard(String view, long count, long maxUpdatedAt, long sumUpdatedAt) {
+        return "\"" + view + "-" + count + "-" + Long.toHexString(maxUpdatedAt)
+                + "-" + Long.toHexString(sumUpdatedAt) + "\"";
+    }
+
+    static String forDashboard(String view, JsonArray trips) {
+        long max = 0;
+        long sum = 0;
+        for (int i = 0; i < trips.size(); i++) {
+            long updatedAt = trips.getJsonObject(i).getLong("updatedAt", 0L);
+            max = Math.max(max, updatedAt);
+            sum += updatedAt;
+        }
+        return forDashboard(view, trips.size(), max, sum);
+    }
+
+    /**
+     * The tag of the same version sent in another format. JSON keeps the plain tag;
+     * CBOR and Smile bodies are different bytes and get their own.
+     */
+    static String forFormat(String etag, String format) {
+        if (Encodings.JSON.equals(format)) {
+            return etag;
+        }
+        String suffix = Encodings.CBOR.equals(format) ? "-cbor" : "-smile";
+        return etag.substring(0, etag.length() - 1) + suffix + "\"";
+    }
+
+    /**
+     * True if the If-None-Match header value lists the given tag or is "*".
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,149 @@
+package com.itinerary.handlers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.MIMEHeader;
+import io.vertx.ext.web.RoutingContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wire formats for trip bodies. JSON is the default; clients that list CBOR or
+ * Smile in Accept get the same document in that binary encoding, and may send
+ * request bodies in it with the matching Content-Type. Error responses stay JSON.
+ */
+final class Encodings {
+
+    static final String JSON = "application/json";
+    static final String CBOR = "application/cbor";
+    static final String SMILE = "application/x-jackson-smile";
+
+    private static final JsonFactory CBOR_FACTORY = new CBORFactory();
+    private static final JsonFactory SMILE_FACTORY = new SmileFactory();
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(CBOR_FACTORY);
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(SMILE_FACTORY);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private Encodings() {
+    }
+
+    /**
+     * The acceptable format with the highest weight, earliest listed on ties. JSON
+     * when Accept is missing or names nothing we produce, as before negotiation.
+     */
+    static String negotiate(RoutingContext ctx) {
+        String best = JSON;
+        float bestWeight = 0;
+        for (MIMEHeader accepted : ctx.parsedHeaders().accept()) {
+            String format = format(accepted);
+            if (format != null && accepted.weight() > bestWeight) {
+                best = format;
+                bestWeight = accepted.weight();
+            }
+        }
+        return best;
+    }
+
+    private static String format(MIMEHeader header) {
+        String type = header.component() + "/" + header.subComponent();
+        if (CBOR.equals(type) || SMILE.equals(type)) {
+            return type;
+        }
+        if (JSON.equals(type) || "*".equals(header.subComponent())) {
+            return JSON;
+        }
+        return null;
+    }
+
+    /**
+     * Sends an already encoded body. Vary tells caches the body depends on Accept.
+     */
+    static void send(RoutingContext ctx, String format, Buffer body) {
+        ctx.response()
+                .putHeader("content-type", format)
+                .putHeader("Vary", "Accept")
+                .end(body);
+    }
+
+    static void send(RoutingContext ctx, JsonObject body) {
+        String format = negotiate(ctx);
+        send(ctx, format, encode(body, format));
+    }
+
+    /**
+     * Sends {"field": value} without building the envelope object.
+     */
+    static void sendEnvelope(RoutingContext ctx, String format, String field, Object value) {
+        sendEnvelope(ctx, format, field, value, DocumentWriter.TRIP_SIZE_HINT);
+    }
+
+    /**
+     * elementSizeHint sizes the body buffer per list element, e.g.
+     * DocumentWriter.SUMMARY_SIZE_HINT for summaries.
+     */
+    static void sendEnvelope(RoutingContext ctx, String format, String field, Object value, int elementSizeHint) {
+        send(ctx, format, DocumentWriter.envelope(factory(format), field, value, elementSizeHint));
+    }
+
+    static void sendPage(RoutingContext ctx, List<?> trips, String nextCursor, int elementSizeHint) {
+        String format = negotiate(ctx);
+        send(ctx, format, DocumentWriter.page(factory(format), trips, nextCursor, elementSizeHint));
+    }
+
+    static Buffer encode(JsonObject body, String format) {
+        return DocumentWriter.document(factory(format), body);
+    }
+
+    /**
+     * Generator factory for a negotiated format; DocumentWriter writes every format
+     * from the same document walk.
+     */
+    static JsonFactory factory(String format) {
+        if (CBOR.equals(format)) {
+            return CBOR_FACTORY;
+        }
+        return SMILE.equals(format) ? SMILE_FACTORY : DocumentWriter.JSON;
+    }
+
+    /**
+     * The request body decoded according to its Content-Type, JSON unless it names
+     * CBOR or Smile. Like getBodyAsJson, null for an empty body and DecodeException
+     * for a malformed one.
+     */
+    static JsonObject readBody(RoutingContext ctx) {
+        MIMEHeader contentType = ctx.parsedHeaders().contentType();
+        String format = contentType == null ? JSON : format(contentType);
+        if (!CBOR.equals(format) && !SMILE.equals(format)) {
+            return ctx.getBodyAsJson();
+        }
+        Buffer body = ctx.getBody();
+        if (body == null || body.length() == 0) {
+            return null;
+        }
+        return decode(body, format);
+    }
+
+    static JsonObject decode(Buffer body, String format) {
+        if (JSON.equals(format)) {
+            return new JsonObject(body);
+        }
+        try {
+            return new JsonObject(mapper(format).readValue(body.getBytes(), MAP_TYPE));
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode " + format + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static ObjectMapper mapper(String format) {
+        return CBOR.equals(format) ? CBOR_MAPPER : SMILE_MAPPER;
+    }
+}
@@ -0,0 +1,37 @@
+package com.itinerary.handlers;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The {error, code, message, timestamp} body of every API error response, for the
+ * handlers and for the admission and event-stream layers in front of them.
+ */
+public final class ErrorResponse {
+
+    private ErrorResponse() {
+    }
+
+    /**
+     * The same body as create(code, message), written straight to a Buffer.
+     */
+    public static Buffer buffer(int code, String message) {
+        return DocumentWriter.error(code, message, null, null);
+    }
+
+    /**
+     * As buffer(code, message), with one more field carrying the details, e.g. the
+     * per-operation errors of a rejected batch.
+     */
+    public static Buffer buffer(int code, String message, String field, Object details) {
+        return DocumentWriter.error(code, message, field, details);
+    }
+
+    public static JsonObject create(int code, String message) {
+        return new JsonObject()
+                .put("error", true)
+                .put("code", code)
+                .put("message", message)
+                .put("timestamp", System.currentTimeMillis());
+    }
+}
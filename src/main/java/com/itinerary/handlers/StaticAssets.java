@@ -0,0 +1,282 @@
+package com.itinerary.handlers;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static files held in memory: the test pages under static/html and everything
+ * under webroot, read once when the first verticle starts and shared by all of them.
+ *
+ * Each file keeps its raw bytes plus gzip and, when the native library loads,
+ * brotli variants, compressed ahead of time at maximum level. A request picks the
+ * smallest variant its Accept-Encoding allows. ETags are strong and per variant, so
+ * conditional requests are answered with 304 from memory without any file access.
+ */
+final class StaticAssets implements Shareable {
+
+    private static final Logger log = LoggerFactory.getLogger(StaticAssets.class);
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "staticAssets";
+
+    private static final String[] ROOTS = {"static/html", "webroot"};
+
+    /**
+     * Files below this size are sent as is; compression would not pay for the header.
+     */
+    private static final int MIN_COMPRESS_BYTES = 256;
+
+    /**
+     * Content-hashed names such as app.3f9c2a1b.js never change, so they may be cached for a year.
+     */
+    private static final Pattern FINGERPRINTED = Pattern.compile(".*\\.[0-9a-fA-F]{8,}\\.[A-Za-z0-9]+$");
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    private static final class Variant {
+        final String encoding;
+        final Buffer body;
+        final String etag;
+
+        Variant(String encoding, Buffer body, String etag) {
+            this.encoding = encoding;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+
+    private static final class Asset {
+        final String contentType;
+        final String cacheControl;
+        final Variant identity;
+        final Variant gzip;
+        final Variant brotli;
+
+        Asset(String contentType, String cacheControl, Variant identity, Variant gzip, Variant brotli) {
+            this.contentType = contentType;
+            this.cacheControl = cacheControl;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.brotli = brotli;
+        }
+    }
+
+    private StaticAssets() {
+    }
+
+    static StaticAssets shared(Vertx vertx) {
+        LocalMap<String, StaticAssets> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        StaticAssets existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+        StaticAssets created = load(vertx.fileSystem());
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        return existing != null ? existing : created;
+    }
+
+    private static StaticAssets load(FileSystem fs) {
+        boolean brotli = brotliAvailable();
+        StaticAssets loaded = new StaticAssets();
+        long raw = 0;
+        long smallest = 0;
+        for (String root : ROOTS) {
+            if (fs.existsBlocking(root)) {
+                raw += loaded.add(fs, root, root, brotli);
+            }
+        }
+        for (Asset asset : loaded.assets.values()) {
+            smallest += smallestOf(asset).body.length();
+        }
+        log.info("component=staticAssets files={} rawBytes={} compressedBytes={} brotli={}",
+                loaded.assets.size(), raw, smallest, brotli);
+        return loaded;
+    }
+
+    /**
+     * Reads one file (or directory, recursively) and returns the raw bytes added.
+     * Assets are keyed by their classpath-relative path, whatever file readDirBlocking
+     * resolved them to.
+     */
+    private long add(FileSystem fs, String path, String file, boolean brotli) {
+        if (fs.propsBlocking(file).isDirectory()) {
+            long total = 0;
+            for (String child : fs.readDirBlocking(file)) {
+                String name = child.substring(Math.max(child.lastIndexOf('/'), child.lastIndexOf('\\')) + 1);
+                total += add(fs, path + "/" + name, child, brotli);
+            }
+            return total;
+        }
+
+        byte[] bytes = fs.readFileBlocking(file).getBytes();
+        String etag = digest(bytes);
+
+        Variant identity = new Variant(null, Buffer.buffer(bytes), "\"" + etag + "\"");
+        Variant gzip = null;
+        Variant br = null;
+        if (bytes.length >= MIN_COMPRESS_BYTES && compressible(path)) {
+            gzip = smallerOrNull(identity, "gzip", gzip(bytes), etag);
+            br = brotli ? smallerOrNull(identity, "br", brotli(bytes), etag) : null;
+        }
+
+        String cacheControl = FINGERPRINTED.matcher(path).matches() ? IMMUTABLE : REVALIDATE;
+        assets.put(path, new Asset(contentType(path), cacheControl, identity, gzip, br));
+        return bytes.length;
+    }
+
+    private static Variant smallerOrNull(Variant identity, String encoding, byte[] compressed, String etag) {
+        if (compressed == null || compressed.length >= identity.body.length()) {
+            return null;
+        }
+        return new Variant(encoding, Buffer.buffer(compressed), "\"" + etag + "-" + encoding + "\"");
+    }
+
+    /**
+     * Serves the asset at path, e.g. "static/html/test-login.html" or "webroot/css/app.css".
+     * Returns false when there is no such asset so the caller can fall through.
+     */
+    boolean serve(RoutingContext ctx, String path) {
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            return false;
+        }
+
+        Variant variant = negotiate(asset, ctx.request().getHeader("Accept-Encoding"));
+        HttpServerResponse response = ctx.response()
+                .putHeader("Vary", "Accept-Encoding")
+                .putHeader("Cache-Control", asset.cacheControl)
+                .putHeader("ETag", variant.etag);
+
+        if (ETags.matches(ctx.request().getHeader("If-None-Match"), variant.etag)) {
+            response.setStatusCode(304).end();
+            return true;
+        }
+
+        // identity stops the server-wide compressor from re-encoding what is already optimal
+        response.putHeader("Content-Encoding", variant.encoding != null ? variant.encoding : "identity")
+                .putHeader("Content-Type", asset.contentType)
+                .end(variant.body);
+        return true;
+    }
+
+    /**
+     * Smallest variant whose coding the client accepts with a non-zero q-value.
+     */
+    private static Variant negotiate(Asset asset, String acceptEncoding) {
+        if (acceptEncoding == null || (asset.gzip == null && asset.brotli == null)) {
+            return asset.identity;
+        }
+        boolean br = false;
+        boolean gzip = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            boolean refused = tokens.length > 1 && tokens[1].trim().matches("q=0(\\.0*)?");
+            if (!refused) {
+                br |= coding.equals("br") || coding.equals("*");
+                gzip |= coding.equals("gzip") || coding.equals("*");
+            }
+        }
+        if (br && asset.brotli != null) {
+            return asset.brotli;
+        }
+        if (gzip && asset.gzip != null) {
+            return asset.gzip;
+        }
+        return asset.identity;
+    }
+
+    private static Variant smallestOf(Asset asset) {
+        return asset.brotli != null ? asset.brotli : asset.gzip != null ? asset.gzip : asset.identity;
+    }
+
+    private static boolean compressible(String path) {
+        return path.endsWith(".html") || path.endsWith(".css") || path.endsWith(".js")
+                || path.endsWith(".json") || path.endsWith(".svg") || path.endsWith(".txt");
+    }
+
+    private static String contentType(String path) {
+        String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "html":
+                return "text/html; charset=utf-8";
+            case "css":
+                return "text/css; charset=utf-8";
+            case "js":
+                return "text/javascript; charset=utf-8";
+            case "json":
+                return "application/json";
+            case "svg":
+                return "image/svg+xml";
+            case "png":
+                return "image/png";
+            case "ico":
+                return "image/x-icon";
+            case "txt":
+                return "text/plain; charset=utf-8";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean brotliAvailable() {
+        try {
+            return Brotli4jLoader.isAvailable();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static byte[] brotli(byte[] bytes) {
+        try {
+            return Encoder.compress(bytes, new Encoder.Parameters().setQuality(11));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.itinerary.handlers;
+
+import com.itinerary.repository.StorageUnavailableException;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Maps a failed repository call to an error response. While the storage circuit is
+ * open (or a call timed out) the answer is 503 with Retry-After, so clients back off
+ * instead of reading it as a missing trip or a server bug. Anything else, including
+ * a call that succeeded but found nothing, gets the caller's status and message.
+ */
+final class StorageFailures {
+
+    // Matches the breaker's default resetTimeoutMs: the earliest a trial call is let through
+    private static final String RETRY_AFTER_SECONDS = "10";
+
+    private StorageFailures() {
+    }
+
+    static void fail(RoutingContext ctx, Throwable cause, int status, String message) {
+        if (cause instanceof StorageUnavailableException) {
+            ctx.response()
+                    .setStatusCode(503)
+                    .putHeader("Retry-After", RETRY_AFTER_SECONDS)
+                    .end(ErrorResponse.buffer(503, "Storage temporarily unavailable, please retry"));
+            return;
+        }
+        ctx.response()
+                .setStatusCode(status)
+                .end(ErrorResponse.buffer(status, message));
+    }
+}
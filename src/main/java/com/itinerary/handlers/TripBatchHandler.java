@@ -0,0 +1,156 @@
+package com.itinerary.handlers;
+
+import com.itinerary.cache.TripCache;
+import com.itinerary.email.EmailOutbox;
+import com.itinerary.events.TripEvents;
+import com.itinerary.repository.TripRepository;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * POST /api/trips/:tripId/batch applies an ordered list of day/activity/trip edits.
+ *
+ * Every operation is validated here before any is applied; the repository then
+ * replays them in order and reports, per operation, the outcome the matching
+ * single-item route would give (e.g. 404 "Day not found"). An operation that lost
+ * a race with another writer is reported as 409, and one left unapplied because
+ * storage failed partway as 503; the route only fails as a whole when nothing was
+ * applied.
+ */
+public class TripBatchHandler {
+
+    static final int MAX_BATCH_OPERATIONS = 100;
+
+    private final TripRepository trips;
+    private final TripCache tripCache;
+    private final EmailOutbox emailOutbox;
+    private final TripEvents tripEvents;
+
+    public TripBatchHandler(TripRepository trips, TripCache tripCache, EmailOutbox emailOutbox, TripEvents tripEvents) {
+        this.trips = trips;
+        this.tripCache = tripCache;
+        this.emailOutbox = emailOutbox;
+        this.tripEvents = tripEvents;
+    }
+
+    private String getUserIdFromToken(RoutingContext ctx) {
+        if (ctx.user() == null || ctx.user().principal() == null) {
+            throw new RuntimeException("Unauthorized: No user in context");
+        }
+        return ctx.user().principal().getString("sub");
+    }
+
+    public void applyBatch(RoutingContext ctx) {
+        String userId = getUserIdFromToken(ctx);
+        String tripId = ctx.pathParam("tripId");
+        JsonObject body = Encodings.readBody(ctx);
+
+        if (!ValidationUtils.isValidTripId(tripId)) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "Invalid trip ID"));
+            return;
+        }
+
+        JsonArray operations = body == null ? null : body.getJsonArray("operations");
+        if (operations == null || operations.isEmpty() || operations.size() > MAX_BATCH_OPERATIONS) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "operations must hold 1 to " + MAX_BATCH_OPERATIONS + " items"));
+            return;
+        }
+
+        // Reject the whole batch up front if any operation is malformed
+        JsonArray invalid = new JsonArray();
+        for (int i = 0; i < operations.size(); i++) {
+            Object op = operations.getValue(i);
+            String error = op instanceof JsonObject ? validate((JsonObject) op) : "Operation must be an object";
+            if (error != null) {
+                invalid.add(new JsonObject().put("index", i).put("message", error));
+            }
+        }
+        if (!invalid.isEmpty()) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "Invalid operations", "operations", invalid));
+            return;
+        }
+
+        trips.applyBatch(userId, tripId, operations).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.failed()) {
+                StorageFailures.fail(ctx, res.cause(), 500, "Failed to apply batch");
+                return;
+            }
+            if (res.result() == null) {
+                StorageFailures.fail(ctx, res.cause(), 404, "Trip not found");
+                return;
+            }
+
+            JsonArray results = res.result();
+            long applied = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.getJsonObject(i).getInteger("status") == 200) {
+                    applied++;
+                }
+            }
+            if (applied > 0) {
+                tripEvents.publish(userId, tripId, TripEvents.UPDATED, null);
+                String email = ctx.user().principal().getString("email");
+                if (email != null) {
+                    emailOutbox.tripChanged(email, userId, tripId, null, applied + " changes synced");
+                }
+            }
+            Encodings.send(ctx, new JsonObject().put("applied", applied).put("results", results));
+        });
+    }
+
+    /**
+     * Mirrors the request checks of the single-item routes. Returns null when valid.
+     */
+    static String validate(JsonObject op) {
+        String type = op.getString("op");
+        if (type == null) {
+            return "op is required";
+        }
+        if (!type.equals("updateTrip") && (!(op.getValue("dayNumber") instanceof Integer)
+                || !ValidationUtils.isValidDayNumber(String.valueOf(op.getValue("dayNumber"))))) {
+            return "Invalid day number";
+        }
+
+        switch (type) {
+            case "updateTrip":
+                return op.containsKey("tripName") || op.containsKey("description")
+                        ? null : "At least tripName or description is required";
+            case "addDay":
+                if (!op.containsKey("date") || !(op.getValue("places") instanceof JsonArray)) {
+                    return "dayNumber, date, and places are required";
+                }
+                for (Object place : op.getJsonArray("places")) {
+                    if (!(place instanceof JsonObject)
+                            || ((JsonObject) place).getString("activity") == null
+                            || ((JsonObject) place).getString("time") == null) {
+                        return "activity and time are required for each place";
+                    }
+                }
+                return null;
+            case "updateDay":
+                return op.containsKey("date") ? null : "Date is required";
+            case "deleteDay":
+                return null;
+            case "addActivity":
+                return op.containsKey("activity") && op.containsKey("time") ? null : "Activity and time are required";
+            case "updateActivity":
+                if (op.getString("activityName") == null) {
+                    return "activityName is required";
+                }
+                return op.containsKey("activity") || op.containsKey("time")
+                        || op.containsKey("location") || op.containsKey("notes")
+                        ? null : "At least one field (activity, time, location, notes) is required";
+            case "deleteActivity":
+                return op.getString("activityName") != null ? null : "activityName is required";
+            case "reorderActivities":
+                return op.getValue("activities") instanceof JsonArray ? null : "Activities array is required";
+            default:
+                return "Unknown op: " + type;
+        }
+    }
+}
@@ -1,42 +1,49 @@
 package com.itinerary.handlers;
 
+import com.itinerary.cache.TripCache;
+import com.itinerary.email.EmailOutbox;
+import com.itinerary.events.TripEvents;
+import com.itinerary.logging.RequestLog;
+import com.itinerary.repository.TripRepository;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.mongo.MongoClient;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-class ErrorResponse {
-    public static JsonObject create(int code, String message) {
-        return new JsonObject()
-                .put("error", true)
-                .put("code", code)
-                .put("message", message)
-                .put("timestamp", System.currentTimeMillis());
-    }
-}
-
-class ValidationUtils {
-    public static boolean isValidTripId(String tripId) {
-        return tripId != null && tripId.length() == 24; // MongoDB ObjectId length
-    }
-
-    public static boolean isValidDayNumber(String dayNumber) {
-        try {
-            int day = Integer.parseInt(dayNumber);
-            return day > 0 && day <= 365; // Reasonable bounds
-        } catch (NumberFormatException e) {
-            return false;
-        }
-    }
-}
+import java.util.List;
 
 public class TripHandler {
 
-    private final MongoClient mongoClient;
-    private static final String TRIPS_COLLECTION = "trips";
-
-    public TripHandler(MongoClient mongoClient) {
-        this.mongoClient = mongoClient;
+    private static final Logger log = LoggerFactory.getLogger(TripHandler.class);
+
+    private final TripRepository trips;
+    private final TripCache tripCache;
+    private final EmailOutbox emailOutbox;
+    private final TripEvents tripEvents;
+    private final long tombstoneRetentionMillis;
+    static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_BATCH_SIZE = 50;
+    // A write stamped just before a sync read may commit after it; watermarks stay
+    // this far behind the clock so such trips are picked up by the next sync
+    private static final long SYNC_SETTLE_MS = 5_000;
+
+    /**
+     * tombstoneRetentionMillis is how long the repository keeps deletions; older
+     * sync watermarks are refused.
+     */
+    public TripHandler(TripRepository trips, TripCache tripCache, EmailOutbox emailOutbox, TripEvents tripEvents,
+                       long tombstoneRetentionMillis) {
+        this.trips = trips;
+        this.tripCache = tripCache;
+        this.emailOutbox = emailOutbox;
+        this.tripEvents = tripEvents;
+        this.tombstoneRetentionMillis = tombstoneRetentionMillis;
     }
 
     private String getUserIdFromToken(RoutingContext ctx) {
@@ -46,33 +53,337 @@ public class TripHandler {
         return ctx.user().principal().getString("sub");
     }
 
+    /**
+     * Announces a successful mutation to the owner's event streams and queues a change
+     * notice for them, if their token carries an email address. dayNumber and
+     * tripName may be null.
+     */
+    private void tripChanged(RoutingContext ctx, String userId, String tripId, String kind, Integer dayNumber,
+                             String tripName, String summary) {
+        tripEvents.publish(userId, tripId, kind, dayNumber);
+        String email = ctx.user().principal().getString("email");
+        if (email != null) {
+            emailOutbox.tripChanged(email, userId, tripId, tripName, summary);
+        }
+    }
+
+    /**
+     * GET /api/dashboard[?limit=n&after=tripId][&stream=true][&view=summary]
+     *
+     * Without parameters every trip is returned in one body. With limit, trips are
+     * paged in _id order and the response carries nextCursor when more remain; pass
+     * it back as after. stream=true writes the array chunk by chunk from a
+     * repository stream instead of materializing it. view=summary replaces days
+     * with counts and a date range computed by the storage engine.
+     */
     public void getAllTrips(RoutingContext ctx) {
         String userId = getUserIdFromToken(ctx);
-        JsonObject query = new JsonObject().put("userId", userId);
+        String limitParam = ctx.request().getParam("limit");
+        String after = ctx.request().getParam("after");
+        boolean stream = "true".equals(ctx.request().getParam("stream"));
+
+        if (limitParam != null && !ValidationUtils.isValidLimit(limitParam)) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "limit must be between 1 and " + MAX_PAGE_SIZE));
+            return;
+        }
+        if (after != null && !ValidationUtils.isValidTripId(after)) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "Invalid after cursor"));
+            return;
+        }
+
+        // Conditional poll of a whole dashboard: compare against a version computed
+        // from updatedAt alone before loading any trip bodies
+        String ifNoneMatch = ctx.request().getHeader("If-None-Match");
+        String view = "summary".equals(ctx.request().getParam("view")) ? "summary" : "full";
+        if (ifNoneMatch != null && limitParam == null && after == null && !stream
+                && tripCache.getList(userId, view) == null) {
+            String format = Encodings.negotiate(ctx);
+            dashboardETag(userId, view, format).onComplete(etag -> {
+                if (etag.succeeded() && ETags.matches(ifNoneMatch, etag.result())) {
+                    notModified(ctx, etag.result());
+                } else {
+                    loadDashboard(ctx, userId);
+                }
+            });
+            return;
+        }
+
+        loadDashboard(ctx, userId);
+    }
+
+    private void loadDashboard(RoutingContext ctx, String userId) {
+        String limitParam = ctx.request().getParam("limit");
+        String after = ctx.request().getParam("after");
+        boolean stream = "true".equals(ctx.request().getParam("stream"));
+        boolean summary = "summary".equals(ctx.request().getParam("view"));
 
-        mongoClient.find(TRIPS_COLLECTION, query, result -> {
+        // Fetch one extra document to learn whether another page exists
+        int limit = limitParam != null ? Integer.parseInt(limitParam) : -1;
+        int fetch = limit > 0 ? limit + 1 : -1;
+
+        if (summary) {
+            summarizeTrips(ctx, userId, after, limit, after == null && limit < 0);
+            return;
+        }
+
+        if (stream) {
+            streamTrips(ctx, trips.streamByUser(userId, after, fetch, STREAM_BATCH_SIZE), limit);
+            return;
+        }
+
+        if (limit < 0 && after == null) {
+            JsonArray cached = tripCache.getList(userId, "full");
+            if (cached != null) {
+                sendDashboard(ctx, "full", cached);
+                return;
+            }
+
+            long stamp = tripCache.stamp(userId);
+            trips.findByUser(userId, null, -1).onComplete(result -> {
+                if (result.succeeded()) {
+                    JsonArray all = new JsonArray(result.result());
+                    tripCache.putList(userId, "full", all, stamp);
+                    sendDashboard(ctx, "full", all);
+                } else {
+                    StorageFailures.fail(ctx, result.cause(), 500, "Failed to retrieve trips");
+                }
+            });
+            return;
+        }
+
+        trips.findByUser(userId, after, fetch).onComplete(result -> {
             if (result.succeeded()) {
-                JsonArray trips = new JsonArray(result.result());
-                ctx.response()
-                        .putHeader("content-type", "application/json")
-                        .end(new JsonObject()
-                                .put("trips", trips)
-                                .encode());
+                List<JsonObject> page = result.result();
+                String nextCursor = null;
+
+                if (limit > 0 && page.size() > limit) {
+                    page = page.subList(0, limit);
+                    nextCursor = page.get(limit - 1).getString("_id");
+                }
+
+                Encodings.sendPage(ctx, page, nextCursor, DocumentWriter.TRIP_SIZE_HINT);
+            } else {
+                StorageFailures.fail(ctx, result.cause(), 500, "Failed to retrieve trips");
+            }
+        });
+    }
+
+    private void summarizeTrips(RoutingContext ctx, String userId, String after, int limit, boolean cacheable) {
+        JsonArray cached = cacheable ? tripCache.getList(userId, "summary") : null;
+        if (cached != null) {
+            sendDashboard(ctx, "summary", cached);
+            return;
+        }
+
+        long stamp = tripCache.stamp(userId);
+        trips.summariesByUser(userId, after, limit > 0 ? limit + 1 : -1).onComplete(result -> {
+            if (result.failed()) {
+                StorageFailures.fail(ctx, result.cause(), 500, "Failed to retrieve trips");
+                return;
+            }
+            JsonArray summaries = new JsonArray(result.result());
+            if (cacheable) {
+                tripCache.putList(userId, "summary", summaries, stamp);
+                sendDashboard(ctx, "summary", summaries);
+                return;
+            }
+            String nextCursor = null;
+            if (limit > 0 && summaries.size() > limit) {
+                summaries.remove(limit);
+                nextCursor = summaries.getJsonObject(limit - 1).getString("_id");
+            }
+            Encodings.sendPage(ctx, summaries.getList(), nextCursor, DocumentWriter.SUMMARY_SIZE_HINT);
+        });
+    }
+
+    /**
+     * Sends an unpaged dashboard with its ETag, or 304 if the client already has it.
+     */
+    private void sendDashboard(RoutingContext ctx, String view, JsonArray list) {
+        String format = Encodings.negotiate(ctx);
+        String etag = ETags.forFormat(ETags.forDashboard(view, list), format);
+        if (ETags.matches(ctx.request().getHeader("If-None-Match"), etag)) {
+            notModified(ctx, etag);
+            return;
+        }
+        ctx.response().putHeader("ETag", etag);
+        Encodings.sendEnvelope(ctx, format, "trips", list,
+                "summary".equals(view) ? DocumentWriter.SUMMARY_SIZE_HINT : DocumentWriter.TRIP_SIZE_HINT);
+    }
+
+    private Future<String> dashboardETag(String userId, String view, String format) {
+        return trips.dashboardVersion(userId).map(version -> ETags.forFormat(ETags.forDashboard(view,
+                version.getLong("count"),
+                version.getLong("maxUpdatedAt"),
+                version.getLong("sumUpdatedAt")), format));
+    }
+
+    private void notModified(RoutingContext ctx, String etag) {
+        ctx.response()
+                .setStatusCode(304)
+                .putHeader("ETag", etag)
+                .putHeader("Vary", "Accept")
+                .end();
+    }
+
+    private void streamTrips(RoutingContext ctx, ReadStream<JsonObject> cursor, int limit) {
+        HttpServerResponse response = ctx.response();
+
+        // Header is only committed with the first write, so a failure before any
+        // document arrives can still produce a proper 500
+        boolean[] started = {false};
+        int[] written = {0};
+        String[] lastId = {null};
+
+        // Dropping the handler cancels the Mongo subscription, which kills the server
+        // cursor; pausing alone would leave it open until the server times it out
+        response.closeHandler(v -> cursor.handler(null));
+
+        cursor.exceptionHandler(err -> {
+            cursor.handler(null);
+            if (!started[0]) {
+                StorageFailures.fail(ctx, err, 500, "Failed to retrieve trips");
+            } else {
+                // Body is half written; abort the connection so the client sees truncation
+                response.reset();
+            }
+        });
+
+        cursor.handler(trip -> {
+            if (response.closed()) {
+                return;
+            }
+            if (limit > 0 && written[0] == limit) {
+                // The extra lookahead document: signals another page but is not sent
+                written[0]++;
+                return;
+            }
+            if (!started[0]) {
+                started[0] = true;
+                // Streamed lists are JSON only, whatever Accept asks for: the chunks are
+                // spliced by hand and CBOR/Smile have no such incremental writer here
+                response.setChunked(true)
+                        .putHeader("content-type", Encodings.JSON)
+                        .write("{\"trips\":[");
+            } else {
+                response.write(",");
+            }
+            response.write(trip.toBuffer());
+            lastId[0] = trip.getString("_id");
+            written[0]++;
+
+            if (response.writeQueueFull()) {
+                cursor.pause();
+                response.drainHandler(d -> cursor.resume());
+            }
+        });
+
+        cursor.endHandler(v -> {
+            if (response.closed()) {
+                return;
+            }
+            Buffer tail = Buffer.buffer();
+            if (!started[0]) {
+                response.putHeader("content-type", Encodings.JSON);
+                tail.appendString("{\"trips\":[");
+            }
+            tail.appendString("]");
+            if (limit > 0 && written[0] > limit) {
+                tail.appendString(",\"nextCursor\":").appendString(Json.encode(lastId[0]));
+            }
+            response.end(tail.appendString("}"));
+        });
+    }
+
+    /**
+     * GET /api/trips/changes?since=watermark[&limit=n]
+     *
+     * Delta sync for an open dashboard: trips created or updated after the watermark
+     * and the ids of trips deleted since, plus the watermark to send next time.
+     * since=0 returns every trip. hasMore means the page was cut at limit and the
+     * client should ask again right away. A watermark older than the tombstone
+     * retention gets 410 and the client must reload the whole dashboard.
+     */
+    public void getChanges(RoutingContext ctx) {
+        String userId = getUserIdFromToken(ctx);
+        String sinceParam = ctx.request().getParam("since");
+        String limitParam = ctx.request().getParam("limit");
+
+        // Watermark is "<millis>" or "<millis>:<tripId>" when resuming a cut page
+        long since;
+        String afterId = null;
+        try {
+            int colon = sinceParam == null ? -1 : sinceParam.indexOf(':');
+            since = Long.parseLong(colon < 0 ? sinceParam : sinceParam.substring(0, colon));
+            if (colon >= 0) {
+                afterId = sinceParam.substring(colon + 1);
+            }
+        } catch (NumberFormatException e) {
+            since = -1;
+        }
+        if (since < 0 || (afterId != null && !ValidationUtils.isValidTripId(afterId))) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "Invalid since watermark"));
+            return;
+        }
+        if (limitParam != null && !ValidationUtils.isValidLimit(limitParam)) {
+            ctx.response().setStatusCode(400)
+                    .end(ErrorResponse.buffer(400, "limit must be between 1 and " + MAX_PAGE_SIZE));
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (since > 0 && since < now - tombstoneRetentionMillis) {
+            ctx.response().setStatusCode(410)
+                    .end(ErrorResponse.buffer(410, "Watermark has expired, reload the dashboard"));
+            return;
+        }
+
+        int limit = limitParam != null ? Integer.parseInt(limitParam) : MAX_PAGE_SIZE;
+        long from = since;
+        Future<List<JsonObject>> changed = trips.changedSince(userId, since, afterId, limit + 1);
+        Future<List<JsonObject>> deleted = trips.deletedSince(userId, since);
+
+        Future.all(changed, deleted).onComplete(result -> {
+            if (result.failed()) {
+                StorageFailures.fail(ctx, result.cause(), 500, "Failed to retrieve changes");
+                return;
+            }
+            List<JsonObject> page = changed.result();
+            boolean hasMore = page.size() > limit;
+            String watermark;
+            if (hasMore) {
+                page = page.subList(0, limit);
+                JsonObject last = page.get(limit - 1);
+                watermark = last.getLong("updatedAt", 0L) + ":" + last.getString("_id");
             } else {
-                ctx.response()
-                        .setStatusCode(500)
-                        .end(ErrorResponse.create(500, "Failed to retrieve trips").encode());
+                watermark = now - SYNC_SETTLE_MS > from ? String.valueOf(now - SYNC_SETTLE_MS) : sinceParam;
             }
+
+            JsonArray tombstones = new JsonArray();
+            for (JsonObject tombstone : deleted.result()) {
+                tombstones.add(new JsonObject()
+                        .put("tripId", tombstone.getString("_id"))
+                        .put("deletedAt", tombstone.getLong("deletedAt")));
+            }
+
+            Encodings.send(ctx, new JsonObject()
+                    .put("trips", new JsonArray(page))
+                    .put("deleted", tombstones)
+                    .put("watermark", watermark)
+                    .put("hasMore", hasMore));
         });
     }
 
     public void createTrip(RoutingContext ctx) {
         String userId = getUserIdFromToken(ctx);
-        JsonObject body = ctx.getBodyAsJson();
+        JsonObject body = Encodings.readBody(ctx);
 
         if (body == null || !body.containsKey("tripName")) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Trip name is required").encode());
+                    .end(ErrorResponse.buffer(400, "Trip name is required"));
             return;
         }
 
@@ -84,16 +395,16 @@ public class TripHandler {
                 .put("createdAt", System.currentTimeMillis())
                 .put("updatedAt", System.currentTimeMillis());
 
-        mongoClient.insert(TRIPS_COLLECTION, newTrip, res -> {
+        trips.insert(newTrip).onComplete(res -> {
+            tripCache.invalidate(userId, null);
             if (res.succeeded()) {
                 newTrip.put("_id", res.result());
-                ctx.response()
-                        .setStatusCode(201)
-                        .putHeader("content-type", "application/json")
-                        .end(new JsonObject().put("trip", newTrip).encode());
+                tripChanged(ctx, userId, res.result(), TripEvents.CREATED, null, newTrip.getString("tripName"),
+                        "Trip created");
+                ctx.response().setStatusCode(201);
+                Encodings.sendEnvelope(ctx, Encodings.negotiate(ctx), "trip", newTrip);
             } else {
-                ctx.response().setStatusCode(500)
-                        .end(ErrorResponse.create(500, "Failed to create trip").encode());
+                StorageFailures.fail(ctx, res.cause(), 500, "Failed to create trip");
             }
         });
     }
@@ -104,19 +415,18 @@ public class TripHandler {
 
         if (!ValidationUtils.isValidTripId(tripId)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid trip ID").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid trip ID"));
             return;
         }
 
-        JsonObject query = new JsonObject().put("_id", tripId).put("userId", userId);
-
-        mongoClient.removeDocument(TRIPS_COLLECTION, query, res -> {
-            if (res.succeeded() && res.result().getRemovedCount() > 0) {
+        trips.delete(userId, tripId).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.succeeded() && res.result()) {
+                tripChanged(ctx, userId, tripId, TripEvents.DELETED, null, null, "Trip deleted");
                 ctx.response().setStatusCode(200)
                         .end(new JsonObject().put("message", "Trip deleted").encode());
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip not found").encode());
+                StorageFailures.fail(ctx, res.cause(), 404, "Trip not found");
             }
         });
     }
@@ -124,14 +434,12 @@ public class TripHandler {
     public void addDay(RoutingContext ctx) {
         String userId = getUserIdFromToken(ctx);
         String tripId = ctx.pathParam("tripId");
-        JsonObject body = ctx.getBodyAsJson();
-
-        System.out.println("Incoming request body for addDay: " + body.encodePrettily());
+        JsonObject body = Encodings.readBody(ctx);
 
         if (body == null || !body.containsKey("dayNumber") || !body.containsKey("date")
                 || !body.containsKey("places")) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "dayNumber, date, and places are required").encode());
+                    .end(ErrorResponse.buffer(400, "dayNumber, date, and places are required"));
             return;
         }
 
@@ -141,70 +449,65 @@ public class TripHandler {
             JsonObject place = places.getJsonObject(i);
             if (place.getString("activity") == null || place.getString("time") == null) {
                 ctx.response().setStatusCode(400)
-                        .end(ErrorResponse.create(400, "activity and time are required for each place").encode());
+                        .end(ErrorResponse.buffer(400, "activity and time are required for each place"));
                 return;
             }
         }
 
-        // Check if day already exists
-        JsonObject checkQuery = new JsonObject().put("_id", tripId).put("userId", userId)
-                .put("days.dayNumber", body.getInteger("dayNumber"));
+        int dayNumber = body.getInteger("dayNumber");
+        if (log.isDebugEnabled() && RequestLog.sampled(ctx, "addDay")) {
+            log.debug("reqId={} op=addDay tripId={} body={}", RequestLog.id(ctx), tripId, body);
+        }
 
-        mongoClient.findOne("trips", checkQuery, null, res -> {
-            if (res.succeeded() && res.result() != null) {
-                // Day already exists
-                ctx.response().setStatusCode(400)
-                        .end(ErrorResponse.create(400, "Day number already exists for this trip").encode());
+        JsonObject newDay = new JsonObject()
+                .put("dayNumber", dayNumber)
+                .put("date", body.getString("date"))
+                .put("places", places);
+
+        // The repository only adds the day if it is not there yet, in one atomic update
+        trips.addDay(userId, tripId, newDay).onComplete(updateRes -> {
+            tripCache.invalidate(userId, tripId);
+            if (updateRes.failed()) {
+                log.warn("reqId={} op=addDay tripId={} error=\"{}\"", RequestLog.id(ctx), tripId,
+                        updateRes.cause().getMessage());
+                StorageFailures.fail(ctx, updateRes.cause(), 500, "Failed to add day");
+            } else if (updateRes.result().getMatched() > 0) {
+                tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null, "Added day " + dayNumber);
+                ctx.response().setStatusCode(200)
+                        .end(new JsonObject().put("message", "Day added").encode());
             } else {
-                // Day doesn't exist, proceed to add it
-                JsonObject newDay = new JsonObject()
-                        .put("dayNumber", body.getInteger("dayNumber"))
-                        .put("date", body.getString("date"))
-                        .put("places", places);
-
-                JsonObject updateQuery = new JsonObject().put("_id", tripId).put("userId", userId);
-
-                JsonObject update = new JsonObject()
-                        .put("$push", new JsonObject().put("days", newDay))
-                        .put("$set", new JsonObject().put("updatedAt", System.currentTimeMillis()));
-
-                System.out.println("Update query: " + updateQuery.encodePrettily());
-                System.out.println("Update operation: " + update.encodePrettily());
-
-                mongoClient.updateCollection("trips", updateQuery, update, updateRes -> {
-                    if (updateRes.succeeded()) {
-                        System.out.println("Mongo update succeeded. Matched: " + updateRes.result().getDocMatched());
-                        ctx.response().setStatusCode(200)
-                                .end(new JsonObject().put("message", "Day added").encode());
+                // Nothing matched: either the trip is missing or the day already exists
+                trips.exists(userId, tripId).onComplete(exists -> {
+                    if (exists.succeeded() && exists.result()) {
+                        ctx.response().setStatusCode(400)
+                                .end(ErrorResponse.buffer(400, "Day number already exists for this trip"));
                     } else {
-                        System.out.println("Error during MongoDB update: " + updateRes.cause().getMessage());
-                        ctx.response().setStatusCode(500)
-                                .end(ErrorResponse.create(500, "Failed to add day").encode());
+                        StorageFailures.fail(ctx, exists.cause(), 404, "Trip not found");
                     }
                 });
             }
         });
     }
+
     //Update options
     public void updateTrip(RoutingContext ctx) {
         String userId = getUserIdFromToken(ctx);
         String tripId = ctx.pathParam("tripId");
-        JsonObject body = ctx.getBodyAsJson();
+        JsonObject body = Encodings.readBody(ctx);
 
         if (!ValidationUtils.isValidTripId(tripId)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid trip ID").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid trip ID"));
             return;
         }
 
         if (body == null || (!body.containsKey("tripName") && !body.containsKey("description"))) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "At least tripName or description is required").encode());
+                    .end(ErrorResponse.buffer(400, "At least tripName or description is required"));
             return;
         }
 
-        JsonObject query = new JsonObject().put("_id", tripId).put("userId", userId);
-        JsonObject updateFields = new JsonObject().put("updatedAt", System.currentTimeMillis());
+        JsonObject updateFields = new JsonObject();
 
         if (body.containsKey("tripName")) {
             updateFields.put("tripName", body.getString("tripName"));
@@ -213,15 +516,15 @@ public class TripHandler {
             updateFields.put("description", body.getString("description"));
         }
 
-        JsonObject update = new JsonObject().put("$set", updateFields);
-
-        mongoClient.updateCollection(TRIPS_COLLECTION, query, update, res -> {
-            if (res.succeeded() && res.result().getDocMatched() > 0) {
+        trips.updateTrip(userId, tripId, updateFields).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.succeeded() && res.result().getMatched() > 0) {
+                tripChanged(ctx, userId, tripId, TripEvents.UPDATED, null, updateFields.getString("tripName"),
+                        "Trip details updated");
                 ctx.response().setStatusCode(200)
                         .end(new JsonObject().put("message", "Trip updated successfully").encode());
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip not found").encode());
+                StorageFailures.fail(ctx, res.cause(), 404, "Trip not found");
             }
         });
     }
@@ -230,44 +533,35 @@ public class TripHandler {
         String userId = getUserIdFromToken(ctx);
         String tripId = ctx.pathParam("tripId");
         String dayNumberStr = ctx.pathParam("dayNumber");
-        JsonObject body = ctx.getBodyAsJson();
+        JsonObject body = Encodings.readBody(ctx);
 
         if (!ValidationUtils.isValidDayNumber(dayNumberStr)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid day number").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid day number"));
             return;
         }
 
         if (body == null || !body.containsKey("date")) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Date is required").encode());
+                    .end(ErrorResponse.buffer(400, "Date is required"));
             return;
         }
 
         int dayNumber = Integer.parseInt(dayNumberStr);
 
-        JsonObject query = new JsonObject()
-                .put("_id", tripId)
-                .put("userId", userId)
-                .put("days.dayNumber", dayNumber);
-
-        JsonObject update = new JsonObject()
-                .put("$set", new JsonObject()
-                        .put("days.$.date", body.getString("date"))
-                        .put("updatedAt", System.currentTimeMillis()));
-
-        mongoClient.updateCollection(TRIPS_COLLECTION, query, update, res -> {
-            if (res.succeeded() && res.result().getDocMatched() > 0) {
-                if (res.result().getDocModified() > 0) {
+        trips.updateDayDate(userId, tripId, dayNumber, body.getString("date")).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.succeeded() && res.result().getMatched() > 0) {
+                if (res.result().getModified() > 0) {
+                    tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null,
+                            "Day " + dayNumber + " moved to " + body.getString("date"));
                     ctx.response().setStatusCode(200)
                             .end(new JsonObject().put("message", "Day updated successfully").encode());
                 } else {
-                    ctx.response().setStatusCode(404)
-                            .end(ErrorResponse.create(404, "Day not found").encode());
+                    StorageFailures.fail(ctx, res.cause(), 404, "Day not found");
                 }
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip or day not found").encode());
+                StorageFailures.fail(ctx, res.cause(), 404, "Trip or day not found");
             }
         });
     }
@@ -276,17 +570,17 @@ public class TripHandler {
         String userId = getUserIdFromToken(ctx);
         String tripId = ctx.pathParam("tripId");
         String dayNumberStr = ctx.pathParam("dayNumber");
-        JsonObject body = ctx.getBodyAsJson();
+        JsonObject body = Encodings.readBody(ctx);
 
         if (!ValidationUtils.isValidDayNumber(dayNumberStr)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid day number").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid day number"));
             return;
         }
 
         if (body == null || !body.containsKey("activity") || !body.containsKey("time")) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Activity and time are required").encode());
+                    .end(ErrorResponse.buffer(400, "Activity and time are required"));
             return;
         }
 
@@ -304,22 +598,15 @@ public class TripHandler {
             newActivity.put("notes", body.getString("notes"));
         }
 
-        JsonObject query = new JsonObject()
-                .put("_id", tripId)
-                .put("userId", userId)
-                .put("days.dayNumber", dayNumber);
-
-        JsonObject update = new JsonObject()
-                .put("$push", new JsonObject().put("days.$.places", newActivity))
-                .put("$set", new JsonObject().put("updatedAt", System.currentTimeMillis()));
-
-        mongoClient.updateCollection(TRIPS_COLLECTION, query, update, res -> {
-            if (res.succeeded() && res.result().getDocMatched() > 0) {
+        trips.addActivity(userId, tripId, dayNumber, newActivity).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.succeeded() && res.result().getMatched() > 0) {
+                tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null,
+                        "Added " + newActivity.getString("activity") + " to day " + dayNumber);
                 ctx.response().setStatusCode(200)
                         .end(new JsonObject().put("message", "Activity added successfully").encode());
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip or day not found").encode());
+                StorageFailures.fail(ctx, res.cause(), 404, "Trip or day not found");
             }
         });
     }
@@ -329,92 +616,66 @@ public class TripHandler {
         String tripId = ctx.pathParam("tripId");
         String dayNumberStr = ctx.pathParam("dayNumber");
         String oldActivityName = ctx.pathParam("activityName");
-        JsonObject body = ctx.getBodyAsJson();
+        JsonObject body = Encodings.readBody(ctx);
 
         if (!ValidationUtils.isValidDayNumber(dayNumberStr)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid day number").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid day number"));
             return;
         }
 
         if (body == null || (!body.containsKey("activity") && !body.containsKey("time")
                 && !body.containsKey("location") && !body.containsKey("notes"))) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "At least one field (activity, time, location, notes) is required").encode());
+                    .end(ErrorResponse.buffer(400, "At least one field (activity, time, location, notes) is required"));
             return;
         }
 
         int dayNumber = Integer.parseInt(dayNumberStr);
 
-        // First, find the trip and get the current day data
-        JsonObject findQuery = new JsonObject()
-                .put("_id", tripId)
-                .put("userId", userId)
-                .put("days.dayNumber", dayNumber);
+        JsonObject changes = new JsonObject();
+        for (String field : new String[]{"activity", "time", "location", "notes"}) {
+            if (body.containsKey(field)) {
+                changes.put(field, body.getString(field));
+            }
+        }
 
-        mongoClient.findOne(TRIPS_COLLECTION, findQuery, null, findRes -> {
-            if (findRes.succeeded() && findRes.result() != null) {
-                JsonObject trip = findRes.result();
-                JsonArray days = trip.getJsonArray("days");
+        // matched == 0 whenever the trip, day or activity is missing, and then nothing
+        // (not even updatedAt) is written
+        trips.updateActivity(userId, tripId, dayNumber, oldActivityName, changes).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.failed()) {
+                StorageFailures.fail(ctx, res.cause(), 500, "Failed to update activity");
+            } else if (res.result().getMatched() > 0) {
+                tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null,
+                        "Updated " + oldActivityName + " on day " + dayNumber);
+                ctx.response().setStatusCode(200)
+                        .end(new JsonObject().put("message", "Activity updated successfully").encode());
+            } else {
+                activityNotFound(ctx, userId, tripId, dayNumber);
+            }
+        });
+    }
+
+    /**
+     * Picks the most specific 404 after an activity update or delete matched nothing.
+     */
+    private void activityNotFound(RoutingContext ctx, String userId, String tripId, int dayNumber) {
+        JsonObject fields = new JsonObject().put("days.dayNumber", 1);
 
-                // Find the specific day and activity
+        trips.findById(userId, tripId, fields).onComplete(res -> {
+            String message = "Trip not found";
+            if (res.succeeded() && res.result() != null) {
+                message = "Day not found";
+                JsonArray days = res.result().getJsonArray("days", new JsonArray());
                 for (int i = 0; i < days.size(); i++) {
-                    JsonObject day = days.getJsonObject(i);
-                    if (day.getInteger("dayNumber") == dayNumber) {
-                        JsonArray places = day.getJsonArray("places");
-                        for (int j = 0; j < places.size(); j++) {
-                            JsonObject place = places.getJsonObject(j);
-                            if (oldActivityName.equals(place.getString("activity"))) {
-                                // Update the activity
-                                if (body.containsKey("activity")) {
-                                    place.put("activity", body.getString("activity"));
-                                }
-                                if (body.containsKey("time")) {
-                                    place.put("time", body.getString("time"));
-                                }
-                                if (body.containsKey("location")) {
-                                    place.put("location", body.getString("location"));
-                                }
-                                if (body.containsKey("notes")) {
-                                    place.put("notes", body.getString("notes"));
-                                }
-
-                                // Update the entire day
-                                JsonObject updateQuery = new JsonObject()
-                                        .put("_id", tripId)
-                                        .put("userId", userId)
-                                        .put("days.dayNumber", dayNumber);
-
-                                JsonObject update = new JsonObject()
-                                        .put("$set", new JsonObject()
-                                                .put("days.$.places", places)
-                                                .put("updatedAt", System.currentTimeMillis()));
-
-                                mongoClient.updateCollection(TRIPS_COLLECTION, updateQuery, update, updateRes -> {
-                                    if (updateRes.succeeded()) {
-                                        ctx.response().setStatusCode(200)
-                                                .end(new JsonObject().put("message", "Activity updated successfully").encode());
-                                    } else {
-                                        ctx.response().setStatusCode(500)
-                                                .end(ErrorResponse.create(500, "Failed to update activity").encode());
-                                    }
-                                });
-                                return;
-                            }
-                        }
-                        // Activity not found
-                        ctx.response().setStatusCode(404)
-                                .end(ErrorResponse.create(404, "Activity not found").encode());
-                        return;
+                    if (days.getJsonObject(i).getInteger("dayNumber", -1) == dayNumber) {
+                        message = "Activity not found";
+                        break;
                     }
                 }
-                // Day not found
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Day not found").encode());
-            } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip not found").encode());
             }
+            StorageFailures.fail(ctx, res.cause(), 404, message);
         });
     }
 
@@ -424,70 +685,97 @@ public class TripHandler {
 
         if (!ValidationUtils.isValidTripId(tripId)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid trip ID").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid trip ID"));
+            return;
+        }
+
+        String ifNoneMatch = ctx.request().getHeader("If-None-Match");
+        JsonObject cached = tripCache.getTrip(userId, tripId);
+        if (cached != null) {
+            sendTrip(ctx, cached);
             return;
         }
 
-        JsonObject query = new JsonObject().put("_id", tripId).put("userId", userId);
+        if (ifNoneMatch == null) {
+            loadTrip(ctx, userId, tripId);
+            return;
+        }
 
-        mongoClient.findOne(TRIPS_COLLECTION, query, null, result -> {
+        // Conditional poll: fetch only updatedAt and skip the body if it is unchanged
+        JsonObject fields = new JsonObject().put("updatedAt", 1);
+        trips.findById(userId, tripId, fields).onComplete(result -> {
             if (result.succeeded() && result.result() != null) {
-                ctx.response()
-                        .putHeader("content-type", "application/json")
-                        .end(new JsonObject()
-                                .put("trip", result.result())
-                                .encode());
+                String etag = ETags.forFormat(ETags.forTrip(tripId, result.result().getLong("updatedAt", 0L)),
+                        Encodings.negotiate(ctx));
+                if (ETags.matches(ifNoneMatch, etag)) {
+                    notModified(ctx, etag);
+                } else {
+                    loadTrip(ctx, userId, tripId);
+                }
             } else {
-                ctx.response()
-                        .setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip not found").encode());
+                StorageFailures.fail(ctx, result.cause(), 404, "Trip not found");
             }
         });
     }
 
+    private void loadTrip(RoutingContext ctx, String userId, String tripId) {
+        long stamp = tripCache.stamp(userId);
+
+        trips.findById(userId, tripId, null).onComplete(result -> {
+            if (result.succeeded() && result.result() != null) {
+                tripCache.putTrip(userId, tripId, result.result(), stamp);
+                sendTrip(ctx, result.result());
+            } else {
+                StorageFailures.fail(ctx, result.cause(), 404, "Trip not found");
+            }
+        });
+    }
+
+    private void sendTrip(RoutingContext ctx, JsonObject trip) {
+        String format = Encodings.negotiate(ctx);
+        String etag = ETags.forFormat(ETags.forTrip(trip), format);
+        if (ETags.matches(ctx.request().getHeader("If-None-Match"), etag)) {
+            notModified(ctx, etag);
+            return;
+        }
+        ctx.response().putHeader("ETag", etag);
+        Encodings.sendEnvelope(ctx, format, "trip", trip);
+    }
+
     public void reorderActivities(RoutingContext ctx) {
         String userId = getUserIdFromToken(ctx);
         String tripId = ctx.pathParam("tripId");
         String dayNumberStr = ctx.pathParam("dayNumber");
-        JsonObject body = ctx.getBodyAsJson();
+        JsonObject body = Encodings.readBody(ctx);
 
         if (!ValidationUtils.isValidDayNumber(dayNumberStr)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid day number").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid day number"));
             return;
         }
 
         if (body == null || !body.containsKey("activities")) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Activities array is required").encode());
+                    .end(ErrorResponse.buffer(400, "Activities array is required"));
             return;
         }
 
         int dayNumber = Integer.parseInt(dayNumberStr);
         JsonArray newActivitiesOrder = body.getJsonArray("activities");
 
-        JsonObject query = new JsonObject()
-                .put("_id", tripId)
-                .put("userId", userId)
-                .put("days.dayNumber", dayNumber);
-
-        JsonObject update = new JsonObject()
-                .put("$set", new JsonObject()
-                        .put("days.$.places", newActivitiesOrder)
-                        .put("updatedAt", System.currentTimeMillis()));
-
-        mongoClient.updateCollection(TRIPS_COLLECTION, query, update, res -> {
-            if (res.succeeded() && res.result().getDocMatched() > 0) {
-                if (res.result().getDocModified() > 0) {
+        trips.reorderActivities(userId, tripId, dayNumber, newActivitiesOrder).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.succeeded() && res.result().getMatched() > 0) {
+                if (res.result().getModified() > 0) {
+                    tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null,
+                            "Reordered activities on day " + dayNumber);
                     ctx.response().setStatusCode(200)
                             .end(new JsonObject().put("message", "Activities reordered successfully").encode());
                 } else {
-                    ctx.response().setStatusCode(404)
-                            .end(ErrorResponse.create(404, "Day not found").encode());
+                    StorageFailures.fail(ctx, res.cause(), 404, "Day not found");
                 }
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip or day not found").encode());
+                StorageFailures.fail(ctx, res.cause(), 404, "Trip or day not found");
             }
         });
     }
@@ -499,30 +787,26 @@ public class TripHandler {
 
         if (!ValidationUtils.isValidDayNumber(dayNumberStr)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid day number").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid day number"));
             return;
         }
 
         int dayNumber = Integer.parseInt(dayNumberStr);
 
-        JsonObject query = new JsonObject().put("_id", tripId).put("userId", userId);
-
-        JsonObject update = new JsonObject()
-                .put("$pull", new JsonObject().put("days", new JsonObject().put("dayNumber", dayNumber)))
-                .put("$set", new JsonObject().put("updatedAt", System.currentTimeMillis()));
-
-        mongoClient.updateCollection(TRIPS_COLLECTION, query, update, res -> {
-            if (res.succeeded() && res.result().getDocMatched() > 0) {
-                if (res.result().getDocModified() > 0) {
-                    ctx.response().setStatusCode(200)
-                            .end(new JsonObject().put("message", "Day deleted").encode());
-                } else {
-                    ctx.response().setStatusCode(404)
-                            .end(ErrorResponse.create(404, "Day not found").encode());
-                }
+        // updatedAt is always set, so modified cannot signal a missing day; matched can
+        trips.deleteDay(userId, tripId, dayNumber).onComplete(res -> {
+            tripCache.invalidate(userId, tripId);
+            if (res.failed()) {
+                StorageFailures.fail(ctx, res.cause(), 500, "Failed to delete day");
+            } else if (res.result().getMatched() > 0) {
+                tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null, "Removed day " + dayNumber);
+                ctx.response().setStatusCode(200)
+                        .end(new JsonObject().put("message", "Day deleted").encode());
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip not found").encode());
+                trips.exists(userId, tripId).onComplete(exists -> {
+                    String message = exists.succeeded() && exists.result() ? "Day not found" : "Trip not found";
+                    StorageFailures.fail(ctx, exists.cause(), 404, message);
+                });
             }
         });
     }
@@ -535,60 +819,41 @@ public class TripHandler {
 
         if (!ValidationUtils.isValidDayNumber(dayNumberStr)) {
             ctx.response().setStatusCode(400)
-                    .end(ErrorResponse.create(400, "Invalid day number").encode());
+                    .end(ErrorResponse.buffer(400, "Invalid day number"));
             return;
         }
 
         int dayNumber = Integer.parseInt(dayNumberStr);
 
-        System.out.println("Deleting activity: " + activityToRemove + " from day " + dayNumber + " in trip " + tripId);
+        // matched == 0 whenever trip, day or activity is missing, and updatedAt is
+        // never bumped for a no-op delete
+        if (log.isDebugEnabled() && RequestLog.sampled(ctx, "deleteActivity")) {
+            log.debug("reqId={} op=deleteActivity tripId={} dayNumber={} activity={}", RequestLog.id(ctx),
+                    tripId, dayNumber, activityToRemove);
+        }
+
+        trips.deleteActivity(userId, tripId, dayNumber, activityToRemove).onComplete(updateRes -> {
+            tripCache.invalidate(userId, tripId);
+            if (updateRes.failed()) {
+                log.warn("reqId={} op=deleteActivity tripId={} error=\"{}\"", RequestLog.id(ctx), tripId,
+                        updateRes.cause().getMessage());
+                StorageFailures.fail(ctx, updateRes.cause(), 500, "Failed to remove activity");
+                return;
+            }
 
-        // First, find the trip and verify it exists with the specific day
-        JsonObject findQuery = new JsonObject()
-                .put("_id", tripId)
-                .put("userId", userId)
-                .put("days.dayNumber", dayNumber);
-
-        mongoClient.findOne(TRIPS_COLLECTION, findQuery, null, findRes -> {
-            if (findRes.succeeded() && findRes.result() != null) {
-                // Trip and day exist, now remove the activity
-                JsonObject updateQuery = new JsonObject()
-                        .put("_id", tripId)
-                        .put("userId", userId)
-                        .put("days.dayNumber", dayNumber);
-
-                JsonObject update = new JsonObject()
-                        .put("$pull", new JsonObject()
-                                .put("days.$.places", new JsonObject()
-                                        .put("activity", activityToRemove)))
-                        .put("$set", new JsonObject()
-                                .put("updatedAt", System.currentTimeMillis()));
-
-                System.out.println("Update query: " + updateQuery.encodePrettily());
-                System.out.println("Update operation: " + update.encodePrettily());
-
-                mongoClient.updateCollection(TRIPS_COLLECTION, updateQuery, update, updateRes -> {
-                    if (updateRes.succeeded()) {
-                        System.out.println("Activity deletion - Matched: " + updateRes.result().getDocMatched() +
-                                ", Modified: " + updateRes.result().getDocModified());
-
-                        if (updateRes.result().getDocModified() > 0) {
-                            ctx.response().setStatusCode(200)
-                                    .end(new JsonObject().put("message", "Activity removed").encode());
-                        } else {
-                            ctx.response().setStatusCode(404)
-                                    .end(ErrorResponse.create(404, "Activity not found").encode());
-                        }
-                    } else {
-                        System.out.println("Error during activity deletion: " + updateRes.cause().getMessage());
-                        ctx.response().setStatusCode(500)
-                                .end(ErrorResponse.create(500, "Failed to remove activity").encode());
-                    }
-                });
+            if (log.isDebugEnabled() && RequestLog.sampled(ctx, "deleteActivity")) {
+                log.debug("reqId={} op=deleteActivity matched={} modified={}", RequestLog.id(ctx),
+                        updateRes.result().getMatched(), updateRes.result().getModified());
+            }
+
+            if (updateRes.result().getMatched() > 0) {
+                tripChanged(ctx, userId, tripId, TripEvents.UPDATED, dayNumber, null,
+                        "Removed " + activityToRemove + " from day " + dayNumber);
+                ctx.response().setStatusCode(200)
+                        .end(new JsonObject().put("message", "Activity removed").encode());
             } else {
-                ctx.response().setStatusCode(404)
-                        .end(ErrorResponse.create(404, "Trip or day not found").encode());
+                activityNotFound(ctx, userId, tripId, dayNumber);
             }
         });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.itinerary.handlers;
+
+class ValidationUtils {
+    public static boolean isValidTripId(String tripId) {
+        return tripId != null && tripId.length() == 24; // MongoDB ObjectId length
+    }
+
+    public static boolean isValidDayNumber(String dayNumber) {
+        try {
+            int day = Integer.parseInt(dayNumber);
+            return day > 0 && day <= 365; // Reasonable bounds
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public static boolean isValidLimit(String limit) {
+        try {
+            int value = Integer.parseInt(limit);
+            return value > 0 && value <= TripHandler.MAX_PAGE_SIZE;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
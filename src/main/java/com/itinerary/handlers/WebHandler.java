@@ -5,20 +5,33 @@ import io.vertx.core.Vertx;
 
 public class WebHandler {
     private final Vertx vertx;
+    private final StaticAssets assets;
 
     public WebHandler(Vertx vertx) {
         this.vertx = vertx;
+        this.assets = StaticAssets.shared(vertx);
     }
 
     public void serveLoginPage(RoutingContext ctx) {
-        ctx.response().sendFile("static/html/test-login.html");
+        serve(ctx, "static/html/test-login.html");
     }
 
     public void serveSignupPage(RoutingContext ctx) {
-        ctx.response().sendFile("static/html/test-signup.html");
+        serve(ctx, "static/html/test-signup.html");
     }
 
     public void serveDashboardPage(RoutingContext ctx) {
-        ctx.response().sendFile("static/html/test-dashboard.html");
+        serve(ctx, "static/html/test-dashboard.html");
     }
-}
\ No newline at end of file
+
+    // /css/* and /js/* from webroot
+    public void serveAsset(RoutingContext ctx) {
+        serve(ctx, "webroot" + ctx.normalizedPath());
+    }
+
+    private void serve(RoutingContext ctx, String path) {
+        if (!assets.serve(ctx, path)) {
+            ctx.next();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.itinerary.logging;
+
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Request correlation ids and per-route sampling for request-scoped log entries.
+ *
+ * The id is taken from an incoming X-Request-Id header or generated, echoed on the
+ * response and passed explicitly into each log call; MDC is thread-bound and does
+ * not follow a request across event-loop callbacks. Sampling is decided once per
+ * request, so a sampled request logs all of its entries.
+ */
+public final class RequestLog {
+
+    public static final String HEADER = "X-Request-Id";
+    private static final String ID_KEY = "requestId";
+    private static final String SAMPLED_KEY = "logSampled";
+
+    private static volatile Map<String, Double> sampleRates = Map.of();
+    private static volatile double defaultSampleRate = 1.0;
+
+    private RequestLog() {
+    }
+
+    /**
+     * Reads the "logging" config section: defaultSampleRate plus a sampleRates
+     * object keyed by handler name (e.g. "addDay": 0.05).
+     */
+    public static void configure(JsonObject config) {
+        JsonObject logging = config.getJsonObject("logging", new JsonObject());
+        Map<String, Double> rates = new HashMap<>();
+        logging.getJsonObject("sampleRates", new JsonObject())
+                .forEach(entry -> rates.put(entry.getKey(), ((Number) entry.getValue()).doubleValue()));
+        sampleRates = Map.copyOf(rates);
+        defaultSampleRate = logging.getDouble("defaultSampleRate", 1.0);
+    }
+
+    public static Handler<RoutingContext> correlationHandler() {
+        return ctx -> {
+            String id = ctx.request().getHeader(HEADER);
+            if (id == null || id.isEmpty() || id.length() > 64) {
+                id = UUID.randomUUID().toString();
+            }
+            ctx.put(ID_KEY, id);
+            ctx.response().putHeader(HEADER, id);
+            ctx.next();
+        };
+    }
+
+    public static String id(RoutingContext ctx) {
+        String id = ctx.get(ID_KEY);
+        return id != null ? id : "-";
+    }
+
+    /**
+     * Whether this request's debug entries for the given route should be written.
+     */
+    public static boolean sampled(RoutingContext ctx, String route) {
+        Boolean decided = ctx.get(SAMPLED_KEY);
+        if (decided == null) {
+            double rate = sampleRates.getOrDefault(route, defaultSampleRate);
+            decided = rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+            ctx.put(SAMPLED_KEY, decided);
+        }
+        return decided;
+    }
+}
@@ -0,0 +1,294 @@
+package com.itinerary.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide metrics shared by every MainVerticle: per-route latency and status
+ * counts, in-flight requests, per-command Mongo timings and event-loop lag,
+ * rendered in the Prometheus text format by {@link #scrape(RoutingContext)}.
+ *
+ * Metric holders are created once per route or operation; recording into them
+ * afterwards only touches atomics. Per request, the timing end handler is still
+ * one closure.
+ */
+public class MetricsRegistry implements Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "metricsRegistry";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final long LAG_PROBE_INTERVAL_MS = 100;
+
+    // Keyed by "METHOD /path": each MainVerticle has its own Router, so the same
+    // route exists once per instance and must still report as one series
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final Map<Route, RouteMetrics> routesByInstance = new ConcurrentHashMap<>();
+    // Bound once: a method reference in the end handler would be a new object per request
+    private final Function<Route, RouteMetrics> routeMetrics = this::routeMetrics;
+    private final RouteMetrics unmatched = new RouteMetrics("unmatched");
+    private final Map<String, LatencyHistogram> mongoOperations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> mongoFailures = new ConcurrentHashMap<>();
+    private final LatencyHistogram eventLoopLag = new LatencyHistogram();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, Supplier<JsonObject>> components = new ConcurrentHashMap<>();
+    private final Map<String, CounterFamily> counterFamilies = new ConcurrentHashMap<>();
+    private final List<LongConsumer> mongoLatencyListeners = new CopyOnWriteArrayList<>();
+
+    public static MetricsRegistry shared(Vertx vertx) {
+        LocalMap<String, MetricsRegistry> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        MetricsRegistry created = new MetricsRegistry();
+        MetricsRegistry existing = map.putIfAbsent(SHARED_KEY, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Exposes a component's stats() object; every numeric field becomes a gauge
+     * named itinerary_&lt;component&gt;_&lt;field&gt;.
+     */
+    public void registerComponent(String name, Supplier<JsonObject> stats) {
+        components.put(name, stats);
+    }
+
+    /**
+     * Exposes a labeled counter family, e.g. itinerary_admission_throttled_total{kind="..."}.
+     * The supplier decides which label values to report and so bounds the cardinality.
+     */
+    public void registerCounterFamily(String metric, String label, Supplier<Map<String, Long>> values) {
+        counterFamilies.put(metric, new CounterFamily(label, values));
+    }
+
+    /**
+     * Called with the duration in nanoseconds of every completed Mongo operation.
+     */
+    public void addMongoLatencyListener(LongConsumer listener) {
+        mongoLatencyListeners.add(listener);
+    }
+
+    /**
+     * First handler on the router: times each request until its response is written
+     * and attributes it to the route that finally handled it.
+     */
+    public Handler<RoutingContext> httpHandler() {
+        return ctx -> {
+            long start = System.nanoTime();
+            inFlight.incrementAndGet();
+            ctx.addEndHandler(v -> {
+                inFlight.decrementAndGet();
+                Route route = ctx.currentRoute();
+                RouteMetrics metrics = route == null ? unmatched
+                        : routesByInstance.computeIfAbsent(route, routeMetrics);
+                metrics.record(System.nanoTime() - start, ctx.response().getStatusCode());
+            });
+            ctx.next();
+        };
+    }
+
+    private RouteMetrics routeMetrics(Route route) {
+        String methods = route.methods() == null || route.methods().isEmpty() ? "ANY"
+                : route.methods().iterator().next().name();
+        String name = methods + " " + (route.getPath() != null ? route.getPath() : "regex");
+        return routes.computeIfAbsent(name, RouteMetrics::new);
+    }
+
+    /**
+     * Driver listener timing every Mongo command (find, insert, update, delete,
+     * aggregate, getMore, ...) by its command name. Attached through the client
+     * settings (see MongoClients), so the client is used as is and timing costs
+     * nothing on the calling thread.
+     */
+    public CommandListener mongoCommandListener() {
+        return new CommandListener() {
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+                recordMongo(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), false);
+            }
+
+            @Override
+            public void commandFailed(CommandFailedEvent event) {
+                recordMongo(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), true);
+            }
+        };
+    }
+
+    private void recordMongo(String operation, long nanos, boolean failed) {
+        mongoOperations.computeIfAbsent(operation, k -> new LatencyHistogram()).recordNanos(nanos);
+        for (LongConsumer listener : mongoLatencyListeners) {
+            listener.accept(nanos);
+        }
+        if (failed) {
+            mongoFailures.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Samples event-loop lag on the calling verticle's event loop: a periodic timer
+     * records how late it fires. Call once from each verticle's start().
+     */
+    public long startEventLoopProbe(Vertx vertx) {
+        long[] expected = {System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LAG_PROBE_INTERVAL_MS)};
+        return vertx.setPeriodic(LAG_PROBE_INTERVAL_MS, id -> {
+            long now = System.nanoTime();
+            eventLoopLag.recordNanos(Math.max(0, now - expected[0]));
+            expected[0] = now + TimeUnit.MILLISECONDS.toNanos(LAG_PROBE_INTERVAL_MS);
+        });
+    }
+
+    /**
+     * GET /metrics, requiring "Authorization: Bearer &lt;token&gt;" when a token is
+     * given. Without one the endpoint is open, for scrapes over a private network.
+     */
+    public Handler<RoutingContext> scrapeHandler(String bearerToken) {
+        if (bearerToken == null || bearerToken.isEmpty()) {
+            return this::scrape;
+        }
+        byte[] expected = ("Bearer " + bearerToken).getBytes(StandardCharsets.UTF_8);
+        return ctx -> {
+            String authorization = ctx.request().getHeader("Authorization");
+            // Constant time, so the token cannot be guessed byte by byte from timings
+            if (authorization == null
+                    || !MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.UTF_8))) {
+                ctx.response()
+                        .setStatusCode(401)
+                        .putHeader("WWW-Authenticate", "Bearer")
+                        .end();
+                return;
+            }
+            scrape(ctx);
+        };
+    }
+
+    /**
+     * GET /metrics in the Prometheus text exposition format.
+     */
+    public void scrape(RoutingContext ctx) {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# TYPE itinerary_http_requests_in_flight gauge\n")
+                .append("itinerary_http_requests_in_flight ").append(inFlight.get()).append('\n');
+
+        out.append("# TYPE itinerary_http_request_duration_seconds summary\n");
+        for (RouteMetrics metrics : routes.values()) {
+            summary(out, "itinerary_http_request_duration_seconds", "route", metrics.name, metrics.latency);
+        }
+        summary(out, "itinerary_http_request_duration_seconds", "route", unmatched.name, unmatched.latency);
+
+        out.append("# TYPE itinerary_http_responses_total counter\n");
+        for (RouteMetrics metrics : routes.values()) {
+            statusCounts(out, metrics);
+        }
+        statusCounts(out, unmatched);
+
+        out.append("# TYPE itinerary_mongo_operation_duration_seconds summary\n");
+        mongoOperations.forEach((operation, histogram) ->
+                summary(out, "itinerary_mongo_operation_duration_seconds", "op", operation, histogram));
+
+        out.append("# TYPE itinerary_mongo_operation_failures_total counter\n");
+        mongoFailures.forEach((operation, failures) ->
+                out.append("itinerary_mongo_operation_failures_total{op=\"").append(operation).append("\"} ")
+                        .append(failures.get()).append('\n'));
+
+        out.append("# TYPE itinerary_event_loop_lag_seconds summary\n");
+        summary(out, "itinerary_event_loop_lag_seconds", null, null, eventLoopLag);
+
+        components.forEach((component, stats) -> gauges(out, "itinerary_" + component, stats.get()));
+
+        counterFamilies.forEach((metric, family) -> {
+            out.append("# TYPE ").append(metric).append(" counter\n");
+            family.values.get().forEach((value, count) ->
+                    out.append(metric).append('{').append(family.label).append("=\"").append(escape(value))
+                            .append("\"} ").append(count).append('\n'));
+        });
+
+        ctx.response()
+                .putHeader("content-type", "text/plain; version=0.0.4")
+                .end(out.toString());
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value, LatencyHistogram histogram) {
+        String labels = label == null ? "" : label + "=\"" + value + "\",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.quantileSeconds(quantile)).append('\n');
+        }
+        String suffixLabels = label == null ? "" : "{" + label + "=\"" + value + "\"}";
+        out.append(name).append("_sum").append(suffixLabels).append(' ').append(histogram.sumSeconds()).append('\n');
+        out.append(name).append("_count").append(suffixLabels).append(' ').append(histogram.count()).append('\n');
+    }
+
+    private static void statusCounts(StringBuilder out, RouteMetrics metrics) {
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            long count = metrics.statusClasses.get(statusClass);
+            if (count > 0) {
+                out.append("itinerary_http_responses_total{route=\"").append(metrics.name)
+                        .append("\",status=\"").append(statusClass).append("xx\"} ").append(count).append('\n');
+            }
+        }
+    }
+
+    private static void gauges(StringBuilder out, String prefix, JsonObject stats) {
+        for (String field : stats.fieldNames()) {
+            Object value = stats.getValue(field);
+            if (value instanceof Number) {
+                out.append(prefix).append('_').append(field).append(' ').append(value).append('\n');
+            } else if (value instanceof Boolean) {
+                out.append(prefix).append('_').append(field).append(' ').append((Boolean) value ? 1 : 0).append('\n');
+            } else if (value instanceof JsonObject) {
+                gauges(out, prefix + "_" + field, (JsonObject) value);
+            }
+        }
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class CounterFamily {
+        private final String label;
+        private final Supplier<Map<String, Long>> values;
+
+        CounterFamily(String label, Supplier<Map<String, Long>> values) {
+            this.label = label;
+            this.values = values;
+        }
+    }
+
+    private static final class RouteMetrics {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray statusClasses = new AtomicLongArray(6);
+
+        RouteMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, int status) {
+            latency.recordNanos(nanos);
+            int statusClass = status / 100;
+            if (statusClass >= 1 && statusClass <= 5) {
+                statusClasses.incrementAndGet(statusClass);
+            }
+        }
+    }
+}
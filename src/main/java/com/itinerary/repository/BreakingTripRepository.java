@@ -0,0 +1,136 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.List;
+
+/**
+ * Routes every call of another TripRepository through the {@link StorageBreaker},
+ * so a stalled database fails requests fast instead of piling them up.
+ */
+public class BreakingTripRepository implements TripRepository {
+
+    private final Vertx vertx;
+    private final TripRepository delegate;
+    private final StorageBreaker breaker;
+
+    public BreakingTripRepository(Vertx vertx, TripRepository delegate, StorageBreaker breaker) {
+        this.vertx = vertx;
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public Future<List<JsonObject>> findByUser(String userId, String afterId, int limit) {
+        return breaker.call(() -> delegate.findByUser(userId, afterId, limit));
+    }
+
+    @Override
+    public ReadStream<JsonObject> streamByUser(String userId, String afterId, int limit, int batchSize) {
+        // A cursor cannot be wrapped in a single call; just refuse to open one while the circuit is open
+        if (breaker.isOpen()) {
+            return ListReadStream.failed(vertx.getOrCreateContext(),
+                    new StorageUnavailableException("Storage circuit is open", null));
+        }
+        return delegate.streamByUser(userId, afterId, limit, batchSize);
+    }
+
+    @Override
+    public ReadStream<JsonObject> streamByDayDate(String date, int batchSize) {
+        if (breaker.isOpen()) {
+            return ListReadStream.failed(vertx.getOrCreateContext(),
+                    new StorageUnavailableException("Storage circuit is open", null));
+        }
+        return delegate.streamByDayDate(date, batchSize);
+    }
+
+    @Override
+    public Future<List<JsonObject>> summariesByUser(String userId, String afterId, int limit) {
+        return breaker.call(() -> delegate.summariesByUser(userId, afterId, limit));
+    }
+
+    @Override
+    public Future<JsonObject> dashboardVersion(String userId) {
+        return breaker.call(() -> delegate.dashboardVersion(userId));
+    }
+
+    @Override
+    public Future<JsonObject> findById(String userId, String tripId, JsonObject fields) {
+        return breaker.call(() -> delegate.findById(userId, tripId, fields));
+    }
+
+    @Override
+    public Future<Boolean> exists(String userId, String tripId) {
+        return breaker.call(() -> delegate.exists(userId, tripId));
+    }
+
+    @Override
+    public Future<String> insert(JsonObject trip) {
+        return breaker.call(() -> delegate.insert(trip));
+    }
+
+    @Override
+    public Future<Boolean> delete(String userId, String tripId) {
+        return breaker.call(() -> delegate.delete(userId, tripId));
+    }
+
+    @Override
+    public Future<List<JsonObject>> changedSince(String userId, long since, String afterId, int limit) {
+        return breaker.call(() -> delegate.changedSince(userId, since, afterId, limit));
+    }
+
+    @Override
+    public Future<List<JsonObject>> deletedSince(String userId, long since) {
+        return breaker.call(() -> delegate.deletedSince(userId, since));
+    }
+
+    @Override
+    public Future<WriteResult> updateTrip(String userId, String tripId, JsonObject fields) {
+        return breaker.call(() -> delegate.updateTrip(userId, tripId, fields));
+    }
+
+    @Override
+    public Future<WriteResult> addDay(String userId, String tripId, JsonObject day) {
+        return breaker.call(() -> delegate.addDay(userId, tripId, day));
+    }
+
+    @Override
+    public Future<WriteResult> updateDayDate(String userId, String tripId, int dayNumber, String date) {
+        return breaker.call(() -> delegate.updateDayDate(userId, tripId, dayNumber, date));
+    }
+
+    @Override
+    public Future<WriteResult> deleteDay(String userId, String tripId, int dayNumber) {
+        return breaker.call(() -> delegate.deleteDay(userId, tripId, dayNumber));
+    }
+
+    @Override
+    public Future<WriteResult> addActivity(String userId, String tripId, int dayNumber, JsonObject activity) {
+        return breaker.call(() -> delegate.addActivity(userId, tripId, dayNumber, activity));
+    }
+
+    @Override
+    public Future<WriteResult> updateActivity(String userId, String tripId, int dayNumber, String activityName,
+                                              JsonObject changes) {
+        return breaker.call(() -> delegate.updateActivity(userId, tripId, dayNumber, activityName, changes));
+    }
+
+    @Override
+    public Future<WriteResult> deleteActivity(String userId, String tripId, int dayNumber, String activityName) {
+        return breaker.call(() -> delegate.deleteActivity(userId, tripId, dayNumber, activityName));
+    }
+
+    @Override
+    public Future<WriteResult> reorderActivities(String userId, String tripId, int dayNumber, JsonArray activities) {
+        return breaker.call(() -> delegate.reorderActivities(userId, tripId, dayNumber, activities));
+    }
+
+    @Override
+    public Future<JsonArray> applyBatch(String userId, String tripId, JsonArray operations) {
+        return breaker.call(() -> delegate.applyBatch(userId, tripId, operations));
+    }
+}
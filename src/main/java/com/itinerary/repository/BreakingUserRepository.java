@@ -0,0 +1,34 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Routes every call of another UserRepository through the {@link StorageBreaker}.
+ * A duplicate username is a normal outcome and does not count against it.
+ */
+public class BreakingUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final StorageBreaker breaker;
+
+    public BreakingUserRepository(UserRepository delegate, StorageBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public Future<String> insert(JsonObject user) {
+        return breaker.call(() -> delegate.insert(user));
+    }
+
+    @Override
+    public Future<JsonObject> findByUsername(String username) {
+        return breaker.call(() -> delegate.findByUsername(username));
+    }
+
+    @Override
+    public Future<JsonObject> findById(String userId) {
+        return breaker.call(() -> delegate.findById(userId));
+    }
+}
@@ -0,0 +1,11 @@
+package com.itinerary.repository;
+
+/**
+ * Raised when an insert violates a unique key, e.g. an existing username.
+ */
+public class DuplicateKeyException extends RuntimeException {
+
+    public DuplicateKeyException(String message) {
+        super(message);
+    }
+}
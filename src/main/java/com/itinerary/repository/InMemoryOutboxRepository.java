@@ -0,0 +1,141 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Outbox for the in-memory engine. Records change state in place, so every
+ * operation holds the outbox map's monitor; the outbox sees a handful of writes per
+ * mutation, not the read traffic the trip maps are built for.
+ */
+public class InMemoryOutboxRepository implements OutboxRepository {
+
+    private static final int MAX_CHANGES = 50;
+
+    private final InMemoryStore store;
+
+    public InMemoryOutboxRepository(Vertx vertx) {
+        this.store = InMemoryStore.shared(vertx);
+    }
+
+    @Override
+    public Future<Void> append(JsonObject record) {
+        synchronized (store.outbox) {
+            String id = store.nextId();
+            store.outbox.put(id, record.copy().put("_id", id));
+        }
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<Void> appendChange(JsonObject record, JsonObject change) {
+        synchronized (store.outbox) {
+            JsonObject pending = null;
+            for (JsonObject candidate : store.outbox.values()) {
+                if (OutboxStatus.PENDING.equals(candidate.getString("status"))
+                        && Objects.equals(candidate.getString("type"), record.getString("type"))
+                        && Objects.equals(candidate.getString("to"), record.getString("to"))
+                        && Objects.equals(candidate.getString("tripId"), record.getString("tripId"))) {
+                    pending = candidate;
+                    break;
+                }
+            }
+            if (pending == null) {
+                String id = store.nextId();
+                pending = record.copy().put("_id", id);
+                store.outbox.put(id, pending);
+            } else if (record.getString("tripName") != null) {
+                pending.put("tripName", record.getString("tripName"));
+            }
+            JsonArray changes = pending.getJsonArray("changes");
+            if (changes == null) {
+                changes = new JsonArray();
+                pending.put("changes", changes);
+            }
+            changes.add(change.copy());
+            if (changes.size() > MAX_CHANGES) {
+                changes.remove(0);
+            }
+        }
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<List<JsonObject>> claimDue(long now, int limit) {
+        List<JsonObject> claimed = new ArrayList<>();
+        synchronized (store.outbox) {
+            List<JsonObject> due = new ArrayList<>();
+            for (JsonObject record : store.outbox.values()) {
+                if (OutboxStatus.PENDING.equals(record.getString("status")) && record.getLong("nextAttemptAt", 0L) <= now) {
+                    due.add(record);
+                }
+            }
+            due.sort(Comparator.comparingLong(record -> record.getLong("nextAttemptAt", 0L)));
+            for (JsonObject record : due.subList(0, Math.min(limit, due.size()))) {
+                record.put("status", OutboxStatus.SENDING).put("claimedAt", now);
+                claimed.add(record.copy());
+            }
+        }
+        return Future.succeededFuture(claimed);
+    }
+
+    @Override
+    public Future<Void> releaseClaims() {
+        synchronized (store.outbox) {
+            for (JsonObject record : store.outbox.values()) {
+                if (OutboxStatus.SENDING.equals(record.getString("status"))) {
+                    record.put("status", OutboxStatus.PENDING);
+                }
+            }
+        }
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<Void> markSent(List<String> ids, long sentAt) {
+        synchronized (store.outbox) {
+            // Nothing expires sent records here, so drop them right away
+            ids.forEach(store.outbox::remove);
+        }
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<Void> retry(List<String> ids, long nextAttemptAt, String error) {
+        synchronized (store.outbox) {
+            for (String id : ids) {
+                JsonObject record = store.outbox.get(id);
+                if (record != null) {
+                    record.put("status", OutboxStatus.PENDING)
+                            .put("nextAttemptAt", nextAttemptAt)
+                            .put("lastError", error)
+                            .put("attempts", record.getInteger("attempts", 0) + 1);
+                }
+            }
+        }
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<Void> deadLetter(List<String> ids, String error) {
+        synchronized (store.outbox) {
+            for (String id : ids) {
+                JsonObject record = store.outbox.get(id);
+                if (record != null) {
+                    record.put("status", OutboxStatus.DEAD)
+                            .put("lastError", error)
+                            .put("deadAt", System.currentTimeMillis())
+                            .put("attempts", record.getInteger("attempts", 0) + 1);
+                }
+            }
+        }
+        return Future.succeededFuture();
+    }
+}
@@ -0,0 +1,66 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backing maps of the in-memory engine, shared by every MainVerticle so all event
+ * loops see one data set.
+ *
+ * Stored documents are never mutated: writers replace a trip with an edited copy
+ * inside ConcurrentHashMap.compute, which serializes writers per trip while readers
+ * always see a complete version without taking a lock.
+ */
+class InMemoryStore implements Shareable {
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "inMemoryStore";
+
+    final ConcurrentMap<String, JsonObject> trips = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, NavigableSet<String>> tripIdsByUser = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, JsonObject> usersByName = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, JsonObject> usersById = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, JsonObject> outbox = new ConcurrentHashMap<>();
+    // Nothing is persisted, so tombstones simply live as long as the process
+    final ConcurrentMap<String, ConcurrentMap<String, Long>> tombstonesByUser = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    static InMemoryStore shared(Vertx vertx) {
+        LocalMap<String, InMemoryStore> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        InMemoryStore existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+        InMemoryStore created = new InMemoryStore();
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * 24 hex characters like an ObjectId, increasing in creation order so _id
+     * paging behaves as it does on Mongo.
+     */
+    String nextId() {
+        return String.format("%08x%016x", System.currentTimeMillis() / 1000, sequence.incrementAndGet());
+    }
+
+    NavigableSet<String> tripIds(String userId) {
+        return tripIdsByUser.computeIfAbsent(userId, k -> new ConcurrentSkipListSet<>());
+    }
+
+    /**
+     * Deletion times of the user's trips, by trip id.
+     */
+    ConcurrentMap<String, Long> tombstones(String userId) {
+        return tombstonesByUser.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,343 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Concurrent in-memory engine for tests and load runs. Nothing is persisted and
+ * every call completes synchronously, so latency measured against it is the
+ * server's own overhead.
+ *
+ * Array edits are replayed through {@link TripOperations} on a copy of the trip
+ * inside one compute call, which makes each edit, and each whole batch, atomic.
+ */
+public class InMemoryTripRepository implements TripRepository {
+
+    private final Vertx vertx;
+    private final InMemoryStore store;
+
+    public InMemoryTripRepository(Vertx vertx) {
+        this.vertx = vertx;
+        this.store = InMemoryStore.shared(vertx);
+    }
+
+    private List<JsonObject> select(String userId, String afterId, int limit) {
+        List<JsonObject> trips = new ArrayList<>();
+        Iterable<String> ids = afterId == null
+                ? store.tripIds(userId)
+                : store.tripIds(userId).tailSet(afterId, false);
+        for (String id : ids) {
+            if (limit > 0 && trips.size() == limit) {
+                break;
+            }
+            JsonObject trip = store.trips.get(id);
+            if (trip != null) {
+                trips.add(trip);
+            }
+        }
+        return trips;
+    }
+
+    @Override
+    public Future<List<JsonObject>> findByUser(String userId, String afterId, int limit) {
+        List<JsonObject> trips = select(userId, afterId, limit);
+        trips.replaceAll(JsonObject::copy);
+        return Future.succeededFuture(trips);
+    }
+
+    @Override
+    public ReadStream<JsonObject> streamByUser(String userId, String afterId, int limit, int batchSize) {
+        List<JsonObject> trips = select(userId, afterId, limit);
+        trips.replaceAll(JsonObject::copy);
+        return new ListReadStream<>(vertx.getOrCreateContext(), trips, batchSize);
+    }
+
+    @Override
+    public ReadStream<JsonObject> streamByDayDate(String date, int batchSize) {
+        List<JsonObject> trips = new ArrayList<>();
+        for (String userId : new TreeSet<>(store.tripIdsByUser.keySet())) {
+            for (String id : store.tripIds(userId)) {
+                JsonObject trip = store.trips.get(id);
+                JsonArray days = trip == null ? new JsonArray() : trip.getJsonArray("days", new JsonArray());
+                for (int i = 0; i < days.size(); i++) {
+                    if (date.equals(days.getJsonObject(i).getString("date"))) {
+                        trips.add(new JsonObject()
+                                .put("_id", id)
+                                .put("userId", userId)
+                                .put("tripName", trip.getString("tripName"))
+                                .put("days", new JsonArray().add(days.getJsonObject(i).copy())));
+                        break;
+                    }
+                }
+            }
+        }
+        return new ListReadStream<>(vertx.getOrCreateContext(), trips, batchSize);
+    }
+
+    @Override
+    public Future<List<JsonObject>> summariesByUser(String userId, String afterId, int limit) {
+        List<JsonObject> summaries = new ArrayList<>();
+        for (JsonObject trip : select(userId, afterId, limit)) {
+            summaries.add(summarize(trip));
+        }
+        return Future.succeededFuture(summaries);
+    }
+
+    /**
+     * Same fields as the Mongo summary projection.
+     */
+    private static JsonObject summarize(JsonObject trip) {
+        JsonArray days = trip.getJsonArray("days", new JsonArray());
+        int activityCount = 0;
+        String startDate = null;
+        String endDate = null;
+        for (int i = 0; i < days.size(); i++) {
+            JsonObject day = days.getJsonObject(i);
+            activityCount += day.getJsonArray("places", new JsonArray()).size();
+            String date = day.getString("date");
+            if (date != null) {
+                startDate = startDate == null || date.compareTo(startDate) < 0 ? date : startDate;
+                endDate = endDate == null || date.compareTo(endDate) > 0 ? date : endDate;
+            }
+        }
+
+        JsonObject summary = new JsonObject().put("_id", trip.getString("_id"));
+        for (String field : new String[]{"tripName", "description", "createdAt", "updatedAt"}) {
+            if (trip.containsKey(field)) {
+                summary.put(field, trip.getValue(field));
+            }
+        }
+        return summary
+                .put("dayCount", days.size())
+                .put("activityCount", activityCount)
+                .put("startDate", startDate)
+                .put("endDate", endDate);
+    }
+
+    @Override
+    public Future<JsonObject> dashboardVersion(String userId) {
+        long count = 0;
+        long max = 0;
+        long sum = 0;
+        for (JsonObject trip : select(userId, null, -1)) {
+            long updatedAt = trip.getLong("updatedAt", 0L);
+            count++;
+            max = Math.max(max, updatedAt);
+            sum += updatedAt;
+        }
+        return Future.succeededFuture(new JsonObject()
+                .put("count", count)
+                .put("maxUpdatedAt", max)
+                .put("sumUpdatedAt", sum));
+    }
+
+    private JsonObject owned(String userId, String tripId) {
+        JsonObject trip = store.trips.get(tripId);
+        return trip != null && userId.equals(trip.getString("userId")) ? trip : null;
+    }
+
+    @Override
+    public Future<JsonObject> findById(String userId, String tripId, JsonObject fields) {
+        JsonObject trip = owned(userId, tripId);
+        if (trip == null) {
+            return Future.succeededFuture(null);
+        }
+        if (fields == null || fields.isEmpty()) {
+            return Future.succeededFuture(trip.copy());
+        }
+
+        // Inclusion projections only; a dotted path keeps its whole top-level field
+        JsonObject projected = new JsonObject().put("_id", tripId);
+        for (String path : fields.fieldNames()) {
+            String root = path.contains(".") ? path.substring(0, path.indexOf('.')) : path;
+            if (trip.containsKey(root)) {
+                projected.put(root, trip.getValue(root));
+            }
+        }
+        return Future.succeededFuture(projected.copy());
+    }
+
+    @Override
+    public Future<Boolean> exists(String userId, String tripId) {
+        return Future.succeededFuture(owned(userId, tripId) != null);
+    }
+
+    @Override
+    public Future<String> insert(JsonObject trip) {
+        String id = store.nextId();
+        store.trips.put(id, trip.copy().put("_id", id));
+        store.tripIds(trip.getString("userId")).add(id);
+        return Future.succeededFuture(id);
+    }
+
+    @Override
+    public Future<Boolean> delete(String userId, String tripId) {
+        boolean[] removed = {false};
+        store.trips.computeIfPresent(tripId, (id, trip) -> {
+            if (!userId.equals(trip.getString("userId"))) {
+                return trip;
+            }
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            store.tripIds(userId).remove(tripId);
+            store.tombstones(userId).put(tripId, System.currentTimeMillis());
+        }
+        return Future.succeededFuture(removed[0]);
+    }
+
+    @Override
+    public Future<List<JsonObject>> changedSince(String userId, long since, String afterId, int limit) {
+        List<JsonObject> changed = new ArrayList<>();
+        for (String id : store.tripIds(userId)) {
+            JsonObject trip = store.trips.get(id);
+            if (trip == null) {
+                continue;
+            }
+            long updatedAt = trip.getLong("updatedAt", 0L);
+            if (updatedAt > since || (afterId != null && updatedAt == since && id.compareTo(afterId) > 0)) {
+                changed.add(trip);
+            }
+        }
+        changed.sort(Comparator.<JsonObject>comparingLong(trip -> trip.getLong("updatedAt", 0L))
+                .thenComparing(trip -> trip.getString("_id")));
+        List<JsonObject> page = new ArrayList<>(changed.subList(0, Math.min(limit, changed.size())));
+        page.replaceAll(JsonObject::copy);
+        return Future.succeededFuture(page);
+    }
+
+    @Override
+    public Future<List<JsonObject>> deletedSince(String userId, long since) {
+        List<JsonObject> deleted = new ArrayList<>();
+        store.tombstones(userId).forEach((tripId, deletedAt) -> {
+            if (deletedAt >= since) {
+                deleted.add(new JsonObject().put("_id", tripId).put("deletedAt", deletedAt));
+            }
+        });
+        deleted.sort(Comparator.comparingLong(tombstone -> tombstone.getLong("deletedAt")));
+        return Future.succeededFuture(deleted);
+    }
+
+    @Override
+    public Future<WriteResult> updateTrip(String userId, String tripId, JsonObject fields) {
+        WriteResult[] result = {WriteResult.NO_MATCH};
+        store.trips.computeIfPresent(tripId, (id, trip) -> {
+            if (!userId.equals(trip.getString("userId"))) {
+                return trip;
+            }
+            result[0] = WriteResult.MODIFIED;
+            return trip.copy().mergeIn(fields.copy()).put("updatedAt", System.currentTimeMillis());
+        });
+        return Future.succeededFuture(result[0]);
+    }
+
+    @Override
+    public Future<WriteResult> addDay(String userId, String tripId, JsonObject day) {
+        return edit(userId, tripId, day.copy().put("op", "addDay"));
+    }
+
+    @Override
+    public Future<WriteResult> updateDayDate(String userId, String tripId, int dayNumber, String date) {
+        return edit(userId, tripId, new JsonObject()
+                .put("op", "updateDay")
+                .put("dayNumber", dayNumber)
+                .put("date", date));
+    }
+
+    @Override
+    public Future<WriteResult> deleteDay(String userId, String tripId, int dayNumber) {
+        return edit(userId, tripId, new JsonObject()
+                .put("op", "deleteDay")
+                .put("dayNumber", dayNumber));
+    }
+
+    @Override
+    public Future<WriteResult> addActivity(String userId, String tripId, int dayNumber, JsonObject activity) {
+        return edit(userId, tripId, activity.copy()
+                .put("op", "addActivity")
+                .put("dayNumber", dayNumber));
+    }
+
+    @Override
+    public Future<WriteResult> updateActivity(String userId, String tripId, int dayNumber, String activityName,
+                                              JsonObject changes) {
+        return edit(userId, tripId, changes.copy()
+                .put("op", "updateActivity")
+                .put("dayNumber", dayNumber)
+                .put("activityName", activityName));
+    }
+
+    @Override
+    public Future<WriteResult> deleteActivity(String userId, String tripId, int dayNumber, String activityName) {
+        return edit(userId, tripId, new JsonObject()
+                .put("op", "deleteActivity")
+                .put("dayNumber", dayNumber)
+                .put("activityName", activityName));
+    }
+
+    @Override
+    public Future<WriteResult> reorderActivities(String userId, String tripId, int dayNumber, JsonArray activities) {
+        return edit(userId, tripId, new JsonObject()
+                .put("op", "reorderActivities")
+                .put("dayNumber", dayNumber)
+                .put("activities", activities.copy()));
+    }
+
+    private Future<WriteResult> edit(String userId, String tripId, JsonObject op) {
+        JsonArray results = replayAll(userId, tripId, new JsonArray().add(op));
+        boolean applied = results != null && results.getJsonObject(0).getInteger("status") == 200;
+        return Future.succeededFuture(applied ? WriteResult.MODIFIED : WriteResult.NO_MATCH);
+    }
+
+    @Override
+    public Future<JsonArray> applyBatch(String userId, String tripId, JsonArray operations) {
+        return Future.succeededFuture(replayAll(userId, tripId, operations));
+    }
+
+    /**
+     * Replays the operations on a copy of the trip and swaps it in if any succeeded.
+     * Returns null when the user has no such trip.
+     */
+    private JsonArray replayAll(String userId, String tripId, JsonArray operations) {
+        JsonArray[] results = {null};
+        store.trips.computeIfPresent(tripId, (id, trip) -> {
+            if (!userId.equals(trip.getString("userId"))) {
+                return trip;
+            }
+            JsonObject edited = trip.copy();
+            JsonArray days = edited.getJsonArray("days");
+            if (days == null) {
+                edited.put("days", days = new JsonArray());
+            }
+
+            JsonArray outcomes = new JsonArray();
+            boolean changed = false;
+            for (int i = 0; i < operations.size(); i++) {
+                JsonObject op = operations.getJsonObject(i);
+                JsonObject update = new JsonObject();
+                JsonObject outcome = TripOperations.replay(op, days, update);
+                if (outcome.getInteger("status") == 200 && "updateTrip".equals(op.getString("op"))) {
+                    edited.mergeIn(update.getJsonObject("$set"));
+                }
+                changed |= outcome.getInteger("status") == 200;
+                outcomes.add(outcome.put("index", i).put("op", op.getString("op")));
+            }
+            results[0] = outcomes;
+
+            if (!changed) {
+                return trip;
+            }
+            return edited.put("updatedAt", Math.max(System.currentTimeMillis(), trip.getLong("updatedAt", 0L) + 1));
+        });
+        return results[0];
+    }
+}
@@ -0,0 +1,40 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Users for the in-memory engine; the username map plays the part of the unique index.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private final InMemoryStore store;
+
+    public InMemoryUserRepository(Vertx vertx) {
+        this.store = InMemoryStore.shared(vertx);
+    }
+
+    @Override
+    public Future<String> insert(JsonObject user) {
+        String id = store.nextId();
+        JsonObject stored = user.copy().put("_id", id);
+        if (store.usersByName.putIfAbsent(user.getString("username"), stored) != null) {
+            return Future.failedFuture(new DuplicateKeyException("Username already exists"));
+        }
+        store.usersById.put(id, stored);
+        return Future.succeededFuture(id);
+    }
+
+    @Override
+    public Future<JsonObject> findByUsername(String username) {
+        JsonObject user = store.usersByName.get(username);
+        return Future.succeededFuture(user == null ? null : user.copy());
+    }
+
+    @Override
+    public Future<JsonObject> findById(String userId) {
+        JsonObject user = store.usersById.get(userId);
+        return Future.succeededFuture(user == null ? null : user.copy());
+    }
+}
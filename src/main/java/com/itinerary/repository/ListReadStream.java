@@ -0,0 +1,118 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ReadStream over an already materialized list, so in-memory results can feed the
+ * same backpressured code paths as a Mongo cursor. Items are emitted on the given
+ * context, at most batchSize per event loop turn, and only while there is demand.
+ * A stream created with {@link #failed} emits nothing and reports the failure to
+ * the exception handler instead.
+ */
+class ListReadStream<T> implements ReadStream<T> {
+
+    private final Context context;
+    private final Iterator<T> items;
+    private final int batchSize;
+
+    private Handler<T> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private Throwable failure;
+    private long demand = Long.MAX_VALUE;
+    private boolean scheduled;
+    private boolean ended;
+
+    ListReadStream(Context context, List<T> items, int batchSize) {
+        this.context = context;
+        this.items = items.iterator();
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    static <T> ListReadStream<T> failed(Context context, Throwable failure) {
+        ListReadStream<T> stream = new ListReadStream<>(context, List.of(), 1);
+        stream.failure = failure;
+        return stream;
+    }
+
+    @Override
+    public ReadStream<T> exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> handler(Handler<T> handler) {
+        this.handler = handler;
+        if (handler != null) {
+            schedule();
+        }
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> pause() {
+        demand = 0;
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> resume() {
+        return fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public ReadStream<T> fetch(long amount) {
+        demand = demand + amount < 0 ? Long.MAX_VALUE : demand + amount;
+        schedule();
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    private void schedule() {
+        if (!scheduled && !ended) {
+            scheduled = true;
+            context.runOnContext(v -> drain());
+        }
+    }
+
+    private void drain() {
+        scheduled = false;
+        if (failure != null) {
+            if (handler != null && !ended) {
+                ended = true;
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(failure);
+                }
+            }
+            return;
+        }
+        int emitted = 0;
+        while (handler != null && demand > 0 && items.hasNext()) {
+            if (emitted++ == batchSize) {
+                schedule();
+                return;
+            }
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+            handler.handle(items.next());
+        }
+        if (handler != null && !items.hasNext() && !ended) {
+            ended = true;
+            if (endHandler != null) {
+                endHandler.handle(null);
+            }
+        }
+    }
+}
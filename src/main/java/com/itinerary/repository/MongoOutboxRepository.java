@@ -0,0 +1,130 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.UpdateOptions;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outbox records in the "email_outbox" collection. Due records are found through
+ * the status_nextAttemptAt index and sent ones expire through sentOn_ttl (see
+ * IndexManager).
+ */
+public class MongoOutboxRepository implements OutboxRepository {
+
+    private static final String OUTBOX_COLLECTION = "email_outbox";
+    private static final int MAX_CHANGES = 50;
+    // updateCollection only touches the first match; every status change here is by set
+    private static final UpdateOptions MULTI = new UpdateOptions().setMulti(true);
+
+    private final MongoClient mongoClient;
+
+    public MongoOutboxRepository(MongoClient mongoClient) {
+        this.mongoClient = mongoClient;
+    }
+
+    @Override
+    public Future<Void> append(JsonObject record) {
+        return mongoClient.insert(OUTBOX_COLLECTION, record).mapEmpty();
+    }
+
+    @Override
+    public Future<Void> appendChange(JsonObject record, JsonObject change) {
+        JsonObject query = new JsonObject()
+                .put("type", record.getString("type"))
+                .put("to", record.getString("to"))
+                .put("tripId", record.getString("tripId"))
+                .put("status", OutboxStatus.PENDING);
+
+        // Only the newest changes are kept; one message should not list hundreds of edits
+        JsonObject onInsert = record.copy();
+        onInsert.remove("tripName");
+        JsonObject update = new JsonObject()
+                .put("$setOnInsert", onInsert)
+                .put("$push", new JsonObject().put("changes", new JsonObject()
+                        .put("$each", new JsonArray().add(change))
+                        .put("$slice", -MAX_CHANGES)));
+        if (record.getString("tripName") != null) {
+            update.put("$set", new JsonObject().put("tripName", record.getString("tripName")));
+        }
+
+        return mongoClient.updateCollectionWithOptions(OUTBOX_COLLECTION, query, update,
+                new UpdateOptions().setUpsert(true)).mapEmpty();
+    }
+
+    @Override
+    public Future<List<JsonObject>> claimDue(long now, int limit) {
+        JsonObject due = new JsonObject()
+                .put("status", OutboxStatus.PENDING)
+                .put("nextAttemptAt", new JsonObject().put("$lte", now));
+        FindOptions options = new FindOptions()
+                .setFields(new JsonObject().put("_id", 1))
+                .setSort(new JsonObject().put("nextAttemptAt", 1))
+                .setLimit(limit);
+
+        return mongoClient.findWithOptions(OUTBOX_COLLECTION, due, options).compose(found -> {
+            if (found.isEmpty()) {
+                return Future.succeededFuture(found);
+            }
+            JsonArray ids = new JsonArray();
+            found.forEach(record -> ids.add(record.getString("_id")));
+            JsonObject byId = new JsonObject().put("_id", new JsonObject().put("$in", ids));
+
+            // Re-read after claiming: a change may have been pushed between the find and the claim
+            return mongoClient.updateCollectionWithOptions(OUTBOX_COLLECTION,
+                            byId.copy().put("status", OutboxStatus.PENDING),
+                            new JsonObject().put("$set", new JsonObject()
+                                    .put("status", OutboxStatus.SENDING)
+                                    .put("claimedAt", now)),
+                            MULTI)
+                    .compose(v -> mongoClient.find(OUTBOX_COLLECTION, byId.put("status", OutboxStatus.SENDING)));
+        });
+    }
+
+    @Override
+    public Future<Void> releaseClaims() {
+        return mongoClient.updateCollectionWithOptions(OUTBOX_COLLECTION,
+                new JsonObject().put("status", OutboxStatus.SENDING),
+                new JsonObject().put("$set", new JsonObject().put("status", OutboxStatus.PENDING)),
+                MULTI).mapEmpty();
+    }
+
+    @Override
+    public Future<Void> markSent(List<String> ids, long sentAt) {
+        // TTL indexes only expire BSON dates, so sentOn mirrors sentAt as one
+        return update(ids, new JsonObject().put("$set", new JsonObject()
+                .put("status", OutboxStatus.SENT)
+                .put("sentAt", sentAt)
+                .put("sentOn", new JsonObject().put("$date", Instant.ofEpochMilli(sentAt).toString()))));
+    }
+
+    @Override
+    public Future<Void> retry(List<String> ids, long nextAttemptAt, String error) {
+        return update(ids, new JsonObject()
+                .put("$set", new JsonObject()
+                        .put("status", OutboxStatus.PENDING)
+                        .put("nextAttemptAt", nextAttemptAt)
+                        .put("lastError", error))
+                .put("$inc", new JsonObject().put("attempts", 1)));
+    }
+
+    @Override
+    public Future<Void> deadLetter(List<String> ids, String error) {
+        return update(ids, new JsonObject()
+                .put("$set", new JsonObject()
+                        .put("status", OutboxStatus.DEAD)
+                        .put("lastError", error)
+                        .put("deadAt", System.currentTimeMillis()))
+                .put("$inc", new JsonObject().put("attempts", 1)));
+    }
+
+    private Future<Void> update(List<String> ids, JsonObject update) {
+        JsonObject query = new JsonObject().put("_id", new JsonObject().put("$in", new JsonArray(ids)));
+        return mongoClient.updateCollectionWithOptions(OUTBOX_COLLECTION, query, update, MULTI).mapEmpty();
+    }
+}
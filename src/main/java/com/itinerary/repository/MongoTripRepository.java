@@ -0,0 +1,469 @@
+package com.itinerary.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
+import io.vertx.ext.mongo.UpdateOptions;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trips in the "trips" collection. Array edits are single conditional updates whose
+ * filter includes the day or activity they depend on, so matched == 0 whenever the
+ * target is missing and nothing, not even updatedAt, is written.
+ */
+public class MongoTripRepository implements TripRepository {
+
+    private static final String TRIPS_COLLECTION = "trips";
+    private static final String TOMBSTONES_COLLECTION = "trip_tombstones";
+    private static final long DEFAULT_TOMBSTONE_RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+
+    private final MongoClient mongoClient;
+    private final long tombstoneRetentionMillis;
+
+    public MongoTripRepository(MongoClient mongoClient) {
+        this(mongoClient, DEFAULT_TOMBSTONE_RETENTION_MS);
+    }
+
+    /**
+     * Tombstones are purged by the purgeAt_ttl index once tombstoneRetentionMillis
+     * have passed since the delete.
+     */
+    public MongoTripRepository(MongoClient mongoClient, long tombstoneRetentionMillis) {
+        this.mongoClient = mongoClient;
+        this.tombstoneRetentionMillis = tombstoneRetentionMillis;
+    }
+
+    private static JsonObject byId(String userId, String tripId) {
+        return new JsonObject().put("_id", tripId).put("userId", userId);
+    }
+
+    private static JsonObject byUser(String userId, String afterId) {
+        JsonObject query = new JsonObject().put("userId", userId);
+        if (afterId != null) {
+            query.put("_id", new JsonObject().put("$gt", afterId));
+        }
+        return query;
+    }
+
+    // What a batch replays against, and what is compared when a failed batch is read back
+    private static JsonObject batchFields() {
+        return new JsonObject().put("days", 1).put("tripName", 1).put("description", 1).put("updatedAt", 1);
+    }
+
+    private static WriteResult toWriteResult(MongoClientUpdateResult result) {
+        return result == null ? WriteResult.NO_MATCH : new WriteResult(result.getDocMatched(), result.getDocModified());
+    }
+
+    @Override
+    public Future<List<JsonObject>> findByUser(String userId, String afterId, int limit) {
+        FindOptions options = new FindOptions().setSort(new JsonObject().put("_id", 1));
+        if (limit > 0) {
+            options.setLimit(limit);
+        }
+        return mongoClient.findWithOptions(TRIPS_COLLECTION, byUser(userId, afterId), options);
+    }
+
+    @Override
+    public ReadStream<JsonObject> streamByUser(String userId, String afterId, int limit, int batchSize) {
+        FindOptions options = new FindOptions()
+                .setSort(new JsonObject().put("_id", 1))
+                .setBatchSize(batchSize);
+        if (limit > 0) {
+            options.setLimit(limit);
+        }
+        return mongoClient.findBatchWithOptions(TRIPS_COLLECTION, byUser(userId, afterId), options);
+    }
+
+    @Override
+    public ReadStream<JsonObject> streamByDayDate(String date, int batchSize) {
+        // "days.$" keeps only the matching day, so documents stay small however long the trip is
+        FindOptions options = new FindOptions()
+                .setFields(new JsonObject().put("userId", 1).put("tripName", 1).put("days.$", 1))
+                .setSort(new JsonObject().put("userId", 1))
+                .setBatchSize(batchSize);
+        return mongoClient.findBatchWithOptions(TRIPS_COLLECTION, new JsonObject().put("days.date", date), options);
+    }
+
+    @Override
+    public Future<List<JsonObject>> summariesByUser(String userId, String afterId, int limit) {
+        JsonArray pipeline = new JsonArray()
+                .add(new JsonObject().put("$match", byUser(userId, afterId)))
+                .add(new JsonObject().put("$sort", new JsonObject().put("_id", 1)));
+        if (limit > 0) {
+            pipeline.add(new JsonObject().put("$limit", limit));
+        }
+        pipeline.add(new JsonObject().put("$project", summaryProjection()));
+
+        Promise<List<JsonObject>> promise = Promise.promise();
+        List<JsonObject> trips = new ArrayList<>();
+        ReadStream<JsonObject> results = mongoClient.aggregate(TRIPS_COLLECTION, pipeline);
+        results.exceptionHandler(promise::tryFail);
+        results.handler(trips::add);
+        results.endHandler(v -> promise.tryComplete(trips));
+        return promise.future();
+    }
+
+    /**
+     * Counts are derived from the days array on every read rather than stored, so
+     * they cannot drift from the document no matter which mutator last ran.
+     */
+    static JsonObject summaryProjection() {
+        JsonObject days = new JsonObject().put("$ifNull", new JsonArray().add("$days").add(new JsonArray()));
+
+        JsonObject activitiesPerDay = new JsonObject().put("$map", new JsonObject()
+                .put("input", days)
+                .put("as", "d")
+                .put("in", new JsonObject().put("$size", new JsonObject()
+                        .put("$ifNull", new JsonArray().add("$$d.places").add(new JsonArray())))));
+
+        return new JsonObject()
+                .put("tripName", 1)
+                .put("description", 1)
+                .put("createdAt", 1)
+                .put("updatedAt", 1)
+                .put("dayCount", new JsonObject().put("$size", days))
+                .put("activityCount", new JsonObject().put("$sum", activitiesPerDay))
+                .put("startDate", new JsonObject().put("$min", "$days.date"))
+                .put("endDate", new JsonObject().put("$max", "$days.date"));
+    }
+
+    @Override
+    public Future<JsonObject> dashboardVersion(String userId) {
+        JsonArray pipeline = new JsonArray()
+                .add(new JsonObject().put("$match", new JsonObject().put("userId", userId)))
+                .add(new JsonObject().put("$group", new JsonObject()
+                        .putNull("_id")
+                        .put("count", new JsonObject().put("$sum", 1))
+                        .put("maxUpdatedAt", new JsonObject().put("$max", "$updatedAt"))
+                        .put("sumUpdatedAt", new JsonObject().put("$sum", "$updatedAt"))));
+
+        Promise<JsonObject> promise = Promise.promise();
+        JsonObject version = new JsonObject();
+        ReadStream<JsonObject> results = mongoClient.aggregate(TRIPS_COLLECTION, pipeline);
+        results.exceptionHandler(promise::tryFail);
+        results.handler(version::mergeIn);
+        results.endHandler(v -> promise.tryComplete(new JsonObject()
+                .put("count", version.getLong("count", 0L))
+                .put("maxUpdatedAt", version.getLong("maxUpdatedAt", 0L))
+                .put("sumUpdatedAt", version.getLong("sumUpdatedAt", 0L))));
+        return promise.future();
+    }
+
+    @Override
+    public Future<JsonObject> findById(String userId, String tripId, JsonObject fields) {
+        return mongoClient.findOne(TRIPS_COLLECTION, byId(userId, tripId), fields);
+    }
+
+    @Override
+    public Future<Boolean> exists(String userId, String tripId) {
+        return mongoClient.count(TRIPS_COLLECTION, byId(userId, tripId)).map(count -> count > 0);
+    }
+
+    @Override
+    public Future<String> insert(JsonObject trip) {
+        return mongoClient.insert(TRIPS_COLLECTION, trip);
+    }
+
+    @Override
+    public Future<Boolean> delete(String userId, String tripId) {
+        // Ownership first: only the owner's trip ever gets a tombstone, so the upsert
+        // below, keyed by the trip id alone, cannot collide with another user's.
+        // The tombstone is then written before the trip is removed, so a trip never
+        // disappears without one; if it cannot be written the trip is left in place
+        // and the delete fails. Retrying a delete just refreshes it.
+        return exists(userId, tripId).compose(owned -> {
+            if (!owned) {
+                return Future.succeededFuture(false);
+            }
+            long now = System.currentTimeMillis();
+            // purgeAt is a BSON date because TTL indexes ignore numeric fields
+            JsonObject tombstone = new JsonObject()
+                    .put("$set", new JsonObject()
+                            .put("userId", userId)
+                            .put("deletedAt", now)
+                            .put("purgeAt", new JsonObject().put("$date",
+                                    Instant.ofEpochMilli(now + tombstoneRetentionMillis).toString())));
+            return mongoClient.updateCollectionWithOptions(TOMBSTONES_COLLECTION, new JsonObject().put("_id", tripId),
+                            tombstone, new UpdateOptions().setUpsert(true))
+                    .compose(written -> mongoClient.removeDocument(TRIPS_COLLECTION, byId(userId, tripId)))
+                    // Zero removed means a concurrent delete won; its tombstone is the same
+                    .map(res -> res != null && res.getRemovedCount() > 0);
+        });
+    }
+
+    @Override
+    public Future<List<JsonObject>> changedSince(String userId, long since, String afterId, int limit) {
+        JsonObject query = new JsonObject().put("userId", userId);
+        if (afterId == null) {
+            query.put("updatedAt", new JsonObject().put("$gt", since));
+        } else {
+            query.put("$or", new JsonArray()
+                    .add(new JsonObject().put("updatedAt", new JsonObject().put("$gt", since)))
+                    .add(new JsonObject().put("updatedAt", since).put("_id", new JsonObject().put("$gt", afterId))));
+        }
+        FindOptions options = new FindOptions()
+                .setSort(new JsonObject().put("updatedAt", 1).put("_id", 1))
+                .setLimit(limit);
+        return mongoClient.findWithOptions(TRIPS_COLLECTION, query, options);
+    }
+
+    @Override
+    public Future<List<JsonObject>> deletedSince(String userId, long since) {
+        JsonObject query = new JsonObject()
+                .put("userId", userId)
+                .put("deletedAt", new JsonObject().put("$gte", since));
+        FindOptions options = new FindOptions()
+                .setFields(new JsonObject().put("deletedAt", 1))
+                .setSort(new JsonObject().put("deletedAt", 1));
+        return mongoClient.findWithOptions(TOMBSTONES_COLLECTION, query, options);
+    }
+
+    @Override
+    public Future<WriteResult> updateTrip(String userId, String tripId, JsonObject fields) {
+        JsonObject update = new JsonObject()
+                .put("$set", fields.copy().put("updatedAt", System.currentTimeMillis()));
+        return mongoClient.updateCollection(TRIPS_COLLECTION, byId(userId, tripId), update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    @Override
+    public Future<WriteResult> addDay(String userId, String tripId, JsonObject day) {
+        // Only matches when the day is not there yet, so check and push are one atomic update
+        JsonObject query = byId(userId, tripId)
+                .put("days.dayNumber", new JsonObject().put("$ne", day.getInteger("dayNumber")));
+
+        JsonObject update = new JsonObject()
+                .put("$push", new JsonObject().put("days", day))
+                .put("$set", new JsonObject().put("updatedAt", System.currentTimeMillis()));
+
+        return mongoClient.updateCollection(TRIPS_COLLECTION, query, update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    @Override
+    public Future<WriteResult> updateDayDate(String userId, String tripId, int dayNumber, String date) {
+        JsonObject query = byId(userId, tripId).put("days.dayNumber", dayNumber);
+
+        JsonObject update = new JsonObject()
+                .put("$set", new JsonObject()
+                        .put("days.$.date", date)
+                        .put("updatedAt", System.currentTimeMillis()));
+
+        return mongoClient.updateCollection(TRIPS_COLLECTION, query, update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    @Override
+    public Future<WriteResult> deleteDay(String userId, String tripId, int dayNumber) {
+        JsonObject query = byId(userId, tripId).put("days.dayNumber", dayNumber);
+
+        JsonObject update = new JsonObject()
+                .put("$pull", new JsonObject().put("days", new JsonObject().put("dayNumber", dayNumber)))
+                .put("$set", new JsonObject().put("updatedAt", System.currentTimeMillis()));
+
+        return mongoClient.updateCollection(TRIPS_COLLECTION, query, update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    @Override
+    public Future<WriteResult> addActivity(String userId, String tripId, int dayNumber, JsonObject activity) {
+        JsonObject query = byId(userId, tripId).put("days.dayNumber", dayNumber);
+
+        JsonObject update = new JsonObject()
+                .put("$push", new JsonObject().put("days.$.places", activity))
+                .put("$set", new JsonObject().put("updatedAt", System.currentTimeMillis()));
+
+        return mongoClient.updateCollection(TRIPS_COLLECTION, query, update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    @Override
+    public Future<WriteResult> updateActivity(String userId, String tripId, int dayNumber, String activityName,
+                                              JsonObject changes) {
+        JsonObject set = new JsonObject().put("updatedAt", System.currentTimeMillis());
+        for (String field : changes.fieldNames()) {
+            set.put("days.$[d].places.$[a]." + field, changes.getValue(field));
+        }
+
+        UpdateOptions options = new UpdateOptions().setArrayFilters(new JsonArray()
+                .add(new JsonObject().put("d.dayNumber", dayNumber))
+                .add(new JsonObject().put("a.activity", activityName)));
+
+        return mongoClient.updateCollectionWithOptions(TRIPS_COLLECTION, activityQuery(userId, tripId, dayNumber, activityName),
+                        new JsonObject().put("$set", set), options)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    @Override
+    public Future<WriteResult> deleteActivity(String userId, String tripId, int dayNumber, String activityName) {
+        JsonObject update = new JsonObject()
+                .put("$pull", new JsonObject()
+                        .put("days.$.places", new JsonObject()
+                                .put("activity", activityName)))
+                .put("$set", new JsonObject()
+                        .put("updatedAt", System.currentTimeMillis()));
+
+        return mongoClient.updateCollection(TRIPS_COLLECTION, activityQuery(userId, tripId, dayNumber, activityName), update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    private static JsonObject activityQuery(String userId, String tripId, int dayNumber, String activityName) {
+        return byId(userId, tripId)
+                .put("days", new JsonObject().put("$elemMatch", new JsonObject()
+                        .put("dayNumber", dayNumber)
+                        .put("places.activity", activityName)));
+    }
+
+    @Override
+    public Future<WriteResult> reorderActivities(String userId, String tripId, int dayNumber, JsonArray activities) {
+        JsonObject query = byId(userId, tripId).put("days.dayNumber", dayNumber);
+
+        JsonObject update = new JsonObject()
+                .put("$set", new JsonObject()
+                        .put("days.$.places", activities)
+                        .put("updatedAt", System.currentTimeMillis()));
+
+        return mongoClient.updateCollection(TRIPS_COLLECTION, query, update)
+                .map(MongoTripRepository::toWriteResult);
+    }
+
+    /**
+     * Two round trips: one read of the trip and one ordered bulkWrite.
+     *
+     * Each operation is replayed against the snapshot first, which yields its outcome
+     * and the exact array positions to update. Only operations that succeed in the
+     * replay are sent. Every sent update is guarded on updatedAt: the first on the
+     * snapshot's value, the rest on the value the batch itself writes. If another
+     * writer touches the trip mid-batch, the guard stops matching, so matchedCount is
+     * exactly the number of operations applied and the remainder are reported as 409.
+     *
+     * If the bulkWrite itself fails, the writes already applied are still reported
+     * as 200 and the rest as 503 (see {@link #appliedWrites}), so a client retrying
+     * the failed ones does not repeat additions. The call only fails when nothing
+     * was applied.
+     */
+    @Override
+    public Future<JsonArray> applyBatch(String userId, String tripId, JsonArray operations) {
+        JsonObject tripQuery = byId(userId, tripId);
+
+        return mongoClient.findOne(TRIPS_COLLECTION, tripQuery, batchFields()).compose(snapshot -> {
+            if (snapshot == null) {
+                return Future.succeededFuture(null);
+            }
+
+            JsonArray days = snapshot.getJsonArray("days", new JsonArray()).copy();
+            Object snapshotUpdatedAt = snapshot.getValue("updatedAt");
+            long batchUpdatedAt = Math.max(System.currentTimeMillis(), snapshot.getLong("updatedAt", 0L) + 1);
+
+            JsonArray results = new JsonArray();
+            List<BulkOperation> writes = new ArrayList<>();
+            List<Integer> writeIndexes = new ArrayList<>();
+
+            for (int i = 0; i < operations.size(); i++) {
+                JsonObject op = operations.getJsonObject(i);
+                JsonObject update = new JsonObject();
+                JsonObject outcome = TripOperations.replay(op, days, update);
+                results.add(outcome.put("index", i).put("op", op.getString("op")));
+                if (outcome.getInteger("status") != 200) {
+                    continue;
+                }
+
+                JsonObject set = update.getJsonObject("$set", new JsonObject()).put("updatedAt", batchUpdatedAt);
+                update.put("$set", set);
+
+                JsonObject filter = tripQuery.copy()
+                        .put("updatedAt", writes.isEmpty() ? snapshotUpdatedAt : batchUpdatedAt);
+                writes.add(BulkOperation.createUpdate(filter, update));
+                writeIndexes.add(i);
+            }
+
+            if (writes.isEmpty()) {
+                return Future.succeededFuture(results);
+            }
+
+            return mongoClient.bulkWriteWithOptions(TRIPS_COLLECTION, writes, new BulkWriteOptions(true))
+                    .map(bulk -> notApplied(results, operations, writeIndexes, (int) bulk.getMatchedCount(),
+                            TripOperations.outcome(409, "Trip was modified concurrently, retry this operation")))
+                    .recover(failure -> appliedWrites(failure, tripQuery, snapshot, operations, batchUpdatedAt)
+                            .map(applied -> applied < 0
+                                    ? notApplied(results, operations, writeIndexes, 0, TripOperations.outcome(503,
+                                            "Outcome unknown, reload the trip before retrying this operation"))
+                                    : notApplied(results, operations, writeIndexes, applied, TripOperations.outcome(503,
+                                            "Not applied, storage write failed; retry this operation"))));
+        });
+    }
+
+    /**
+     * Replaces the outcome of every sent write from index applied on with the given one.
+     */
+    private static JsonArray notApplied(JsonArray results, JsonArray operations, List<Integer> writeIndexes,
+                                        int applied, JsonObject outcome) {
+        for (int w = applied; w < writeIndexes.size(); w++) {
+            int index = writeIndexes.get(w);
+            results.set(index, outcome.copy()
+                    .put("index", index)
+                    .put("op", operations.getJsonObject(index).getString("op")));
+        }
+        return results;
+    }
+
+    /**
+     * How many of a batch's writes took effect before bulkWrite failed. An ordered
+     * bulk stops at its first write error and reports the matches before it. Any
+     * other failure (network, timeout) leaves the outcome open, so the trip is read
+     * back and compared with the document after each write, replayed again from the
+     * snapshot; where two consecutive states are equal the later one is taken, as
+     * the write between them changed nothing. Fails with the original error when
+     * nothing was applied, and yields -1 when it cannot be told.
+     */
+    private Future<Integer> appliedWrites(Throwable failure, JsonObject tripQuery, JsonObject snapshot,
+                                          JsonArray operations, long batchUpdatedAt) {
+        if (failure instanceof MongoBulkWriteException) {
+            int applied = ((MongoBulkWriteException) failure).getWriteResult().getMatchedCount();
+            return applied > 0 ? Future.succeededFuture(applied) : Future.failedFuture(failure);
+        }
+        return mongoClient.findOne(TRIPS_COLLECTION, tripQuery, batchFields())
+                .recover(readFailure -> Future.failedFuture(failure))
+                .compose(current -> {
+                    if (current == null) {
+                        return Future.failedFuture(failure);
+                    }
+                    if (!current.containsKey("days")) {
+                        current.put("days", new JsonArray());
+                    }
+                    JsonObject state = snapshot.copy();
+                    JsonArray days = state.getJsonArray("days");
+                    if (days == null) {
+                        state.put("days", days = new JsonArray());
+                    }
+                    int applied = state.equals(current) ? 0 : -1;
+                    int written = 0;
+                    for (int i = 0; i < operations.size(); i++) {
+                        JsonObject update = new JsonObject();
+                        if (TripOperations.replay(operations.getJsonObject(i), days, update).getInteger("status") != 200) {
+                            continue;
+                        }
+                        if ("updateTrip".equals(operations.getJsonObject(i).getString("op"))) {
+                            state.mergeIn(update.getJsonObject("$set"));
+                        }
+                        written++;
+                        if (state.put("updatedAt", batchUpdatedAt).equals(current)) {
+                            applied = written;
+                        }
+                    }
+                    return applied == 0 ? Future.failedFuture(failure) : Future.succeededFuture(applied);
+                });
+    }
+}
@@ -0,0 +1,49 @@
+package com.itinerary.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoServerException;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+
+/**
+ * Users in the "users" collection. Uniqueness of usernames is enforced by the
+ * username_unique index (see IndexManager), not by a lookup before the insert.
+ */
+public class MongoUserRepository implements UserRepository {
+
+    private static final String USERS_COLLECTION = "users";
+
+    private final MongoClient mongoClient;
+
+    public MongoUserRepository(MongoClient mongoClient) {
+        this.mongoClient = mongoClient;
+    }
+
+    @Override
+    public Future<String> insert(JsonObject user) {
+        return mongoClient.insert(USERS_COLLECTION, user).recover(err -> isDuplicateKey(err)
+                ? Future.failedFuture(new DuplicateKeyException("Username already exists"))
+                : Future.failedFuture(err));
+    }
+
+    @Override
+    public Future<JsonObject> findByUsername(String username) {
+        return mongoClient.findOne(USERS_COLLECTION, new JsonObject().put("username", username), null);
+    }
+
+    @Override
+    public Future<JsonObject> findById(String userId) {
+        return mongoClient.findOne(USERS_COLLECTION, new JsonObject().put("_id", userId), null);
+    }
+
+    private static boolean isDuplicateKey(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof MongoServerException
+                    && ErrorCategory.fromErrorCode(((MongoServerException) t).getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
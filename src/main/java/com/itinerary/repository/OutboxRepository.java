@@ -0,0 +1,50 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * The email outbox: notification records written in the request flow and drained
+ * later by OutboxDrainVerticle. A record is pending until it is claimed for
+ * sending, then sent, back to pending with a later nextAttemptAt, or dead once it
+ * has used up its attempts.
+ */
+public interface OutboxRepository {
+
+    /**
+     * Stores a new pending record.
+     */
+    Future<Void> append(JsonObject record);
+
+    /**
+     * Adds change to the pending record with the same type, recipient and tripId,
+     * creating it from record if there is none. Changes made while a record is
+     * waiting are thereby folded into one message.
+     */
+    Future<Void> appendChange(JsonObject record, JsonObject change);
+
+    /**
+     * Marks up to limit pending records that are due at now as being sent and
+     * returns them, oldest nextAttemptAt first.
+     */
+    Future<List<JsonObject>> claimDue(long now, int limit);
+
+    /**
+     * Returns records left claimed by a drainer that stopped, to pending.
+     */
+    Future<Void> releaseClaims();
+
+    Future<Void> markSent(List<String> ids, long sentAt);
+
+    /**
+     * Counts one more attempt and makes the records pending again from nextAttemptAt.
+     */
+    Future<Void> retry(List<String> ids, long nextAttemptAt, String error);
+
+    /**
+     * Counts one more attempt and gives up on the records; they are kept for inspection.
+     */
+    Future<Void> deadLetter(List<String> ids, String error);
+}
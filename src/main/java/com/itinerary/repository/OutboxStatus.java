@@ -0,0 +1,15 @@
+package com.itinerary.repository;
+
+/**
+ * Values of an outbox record's status field.
+ */
+public final class OutboxStatus {
+
+    public static final String PENDING = "pending";
+    public static final String SENDING = "sending";
+    public static final String SENT = "sent";
+    public static final String DEAD = "dead";
+
+    private OutboxStatus() {
+    }
+}
@@ -0,0 +1,117 @@
+package com.itinerary.repository;
+
+import io.vertx.circuitbreaker.CircuitBreaker;
+import io.vertx.circuitbreaker.CircuitBreakerOptions;
+import io.vertx.circuitbreaker.CircuitBreakerState;
+import io.vertx.circuitbreaker.OpenCircuitException;
+import io.vertx.circuitbreaker.TimeoutException;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * One circuit breaker for all storage calls, shared by every MainVerticle.
+ *
+ * Calls that fail or exceed the call timeout count as failures; after maxFailures of
+ * them within the rolling window the circuit opens and calls fail immediately with
+ * {@link StorageUnavailableException} until resetTimeout has passed and a trial call
+ * succeeds. Domain outcomes such as a duplicate username are passed through without
+ * counting, since they say nothing about the health of the database.
+ */
+public class StorageBreaker implements Shareable {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageBreaker.class);
+
+    private static final String SHARED_MAP = "itinerary.shared";
+    private static final String SHARED_KEY = "storageBreaker";
+
+    private final boolean enabled;
+    private final CircuitBreaker breaker;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    StorageBreaker(Vertx vertx, JsonObject config) {
+        this.enabled = config.getBoolean("enabled", true);
+        this.breaker = CircuitBreaker.create("storage", vertx, new CircuitBreakerOptions()
+                        .setMaxFailures(config.getInteger("maxFailures", 5))
+                        .setTimeout(config.getLong("callTimeoutMs", 5_000L))
+                        .setResetTimeout(config.getLong("resetTimeoutMs", 10_000L))
+                        .setFailuresRollingWindow(config.getLong("rollingWindowMs", 10_000L)))
+                .openHandler(v -> log.warn("component=storageBreaker state=open"))
+                .halfOpenHandler(v -> log.info("component=storageBreaker state=half_open"))
+                .closeHandler(v -> log.info("component=storageBreaker state=closed"));
+    }
+
+    /**
+     * Returns the breaker shared by all verticles, created from the given config
+     * section on first use.
+     */
+    public static StorageBreaker shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, StorageBreaker> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        StorageBreaker existing = map.get(SHARED_KEY);
+        if (existing != null) {
+            return existing;
+        }
+        StorageBreaker created = new StorageBreaker(vertx, config);
+        existing = map.putIfAbsent(SHARED_KEY, created);
+        if (existing != null) {
+            created.breaker.close();
+            return existing;
+        }
+        return created;
+    }
+
+    <T> Future<T> call(Supplier<Future<T>> operation) {
+        if (!enabled) {
+            return operation.get();
+        }
+
+        // Domain failures complete the breaker's promise successfully and are unwrapped after
+        Future<AsyncResult<T>> guarded = breaker.execute(promise -> operation.get().onComplete(ar -> {
+            if (ar.failed() && !(ar.cause() instanceof DuplicateKeyException)) {
+                promise.fail(ar.cause());
+            } else {
+                promise.complete(ar);
+            }
+        }));
+
+        return guarded.transform(ar -> {
+            if (ar.succeeded()) {
+                AsyncResult<T> result = ar.result();
+                return result.succeeded() ? Future.succeededFuture(result.result()) : Future.failedFuture(result.cause());
+            }
+            if (ar.cause() instanceof OpenCircuitException) {
+                rejected.increment();
+                return Future.failedFuture(new StorageUnavailableException("Storage circuit is open", ar.cause()));
+            }
+            if (ar.cause() instanceof TimeoutException) {
+                timedOut.increment();
+                return Future.failedFuture(new StorageUnavailableException("Storage call timed out", ar.cause()));
+            }
+            return Future.failedFuture(ar.cause());
+        });
+    }
+
+    boolean isOpen() {
+        return enabled && breaker.state() == CircuitBreakerState.OPEN;
+    }
+
+    public JsonObject stats() {
+        CircuitBreakerState state = breaker.state();
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("state", state.name().toLowerCase())
+                .put("open", state == CircuitBreakerState.OPEN ? 1 : 0)
+                .put("failures", breaker.failureCount())
+                .put("rejected", rejected.sum())
+                .put("timedOut", timedOut.sum());
+    }
+}
@@ -0,0 +1,12 @@
+package com.itinerary.repository;
+
+/**
+ * The storage engine is considered degraded and the call was not attempted, or it
+ * did not complete in time.
+ */
+public class StorageUnavailableException extends RuntimeException {
+
+    public StorageUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
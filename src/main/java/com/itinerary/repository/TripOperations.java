@@ -0,0 +1,150 @@
+package com.itinerary.repository;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Day/activity/trip edits expressed as batch operations ({"op": "addDay", ...}).
+ *
+ * Both engines replay operations through here, so a batch, and every single-item
+ * edit of the in-memory engine, yields exactly the outcome the matching route
+ * documents (e.g. 404 "Day not found").
+ */
+public final class TripOperations {
+
+    private TripOperations() {
+    }
+
+    /**
+     * Applies op to the in-memory days, fills update with the equivalent Mongo update
+     * and returns the outcome the single-item route would have produced. Operations
+     * must already be validated.
+     */
+    public static JsonObject replay(JsonObject op, JsonArray days, JsonObject update) {
+        String type = op.getString("op");
+
+        if (type.equals("updateTrip")) {
+            JsonObject set = new JsonObject();
+            if (op.containsKey("tripName")) {
+                set.put("tripName", op.getString("tripName"));
+            }
+            if (op.containsKey("description")) {
+                set.put("description", op.getString("description"));
+            }
+            update.put("$set", set);
+            return outcome(200, "Trip updated successfully");
+        }
+
+        int dayNumber = op.getInteger("dayNumber");
+        int d = indexOfDay(days, dayNumber);
+
+        if (type.equals("addDay")) {
+            if (d >= 0) {
+                return outcome(400, "Day number already exists for this trip");
+            }
+            JsonObject newDay = new JsonObject()
+                    .put("dayNumber", dayNumber)
+                    .put("date", op.getString("date"))
+                    .put("places", op.getJsonArray("places"));
+            days.add(newDay);
+            update.put("$push", new JsonObject().put("days", newDay));
+            return outcome(200, "Day added");
+        }
+
+        if (d < 0) {
+            return outcome(404, "Day not found");
+        }
+        JsonObject day = days.getJsonObject(d);
+        JsonArray places = day.getJsonArray("places", new JsonArray());
+        String dayPath = "days." + d;
+
+        switch (type) {
+            case "updateDay":
+                day.put("date", op.getString("date"));
+                update.put("$set", new JsonObject().put(dayPath + ".date", op.getString("date")));
+                return outcome(200, "Day updated successfully");
+
+            case "deleteDay":
+                days.remove(d);
+                update.put("$pull", new JsonObject().put("days", new JsonObject().put("dayNumber", dayNumber)));
+                return outcome(200, "Day deleted");
+
+            case "addActivity": {
+                JsonObject activity = new JsonObject()
+                        .put("activity", op.getString("activity"))
+                        .put("time", op.getString("time"));
+                if (op.containsKey("location")) {
+                    activity.put("location", op.getString("location"));
+                }
+                if (op.containsKey("notes")) {
+                    activity.put("notes", op.getString("notes"));
+                }
+                day.put("places", places.add(activity));
+                update.put("$push", new JsonObject().put(dayPath + ".places", activity));
+                return outcome(200, "Activity added successfully");
+            }
+
+            case "updateActivity": {
+                String name = op.getString("activityName");
+                JsonObject set = new JsonObject();
+                for (int a = 0; a < places.size(); a++) {
+                    JsonObject place = places.getJsonObject(a);
+                    if (!name.equals(place.getString("activity"))) {
+                        continue;
+                    }
+                    for (String field : new String[]{"activity", "time", "location", "notes"}) {
+                        if (op.containsKey(field)) {
+                            place.put(field, op.getString(field));
+                            set.put(dayPath + ".places." + a + "." + field, op.getString(field));
+                        }
+                    }
+                }
+                if (set.isEmpty()) {
+                    return outcome(404, "Activity not found");
+                }
+                update.put("$set", set);
+                return outcome(200, "Activity updated successfully");
+            }
+
+            case "deleteActivity": {
+                String name = op.getString("activityName");
+                int before = places.size();
+                for (int a = places.size() - 1; a >= 0; a--) {
+                    if (name.equals(places.getJsonObject(a).getString("activity"))) {
+                        places.remove(a);
+                    }
+                }
+                if (places.size() == before) {
+                    return outcome(404, "Activity not found");
+                }
+                update.put("$pull", new JsonObject().put(dayPath + ".places", new JsonObject().put("activity", name)));
+                return outcome(200, "Activity removed");
+            }
+
+            case "reorderActivities": {
+                JsonArray activities = op.getJsonArray("activities");
+                day.put("places", activities);
+                update.put("$set", new JsonObject().put(dayPath + ".places", activities));
+                return outcome(200, "Activities reordered successfully");
+            }
+
+            default:
+                throw new IllegalArgumentException("Unknown op: " + type);
+        }
+    }
+
+    static int indexOfDay(JsonArray days, int dayNumber) {
+        for (int i = 0; i < days.size(); i++) {
+            Integer number = days.getJsonObject(i).getInteger("dayNumber");
+            if (number != null && number == dayNumber) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static JsonObject outcome(int status, String message) {
+        JsonObject outcome = new JsonObject().put("status", status);
+        return status == 200 ? outcome.put("message", message) : outcome.put("error", message);
+    }
+}
@@ -0,0 +1,107 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.List;
+
+/**
+ * Storage for trips. Every method is scoped to the owning user, so a trip id from
+ * another user behaves like a missing trip. Mutators bump updatedAt and report
+ * matched/modified counts with MongoDB semantics: matched is 0 when the trip, or
+ * the day/activity the operation is conditioned on, does not exist.
+ *
+ * Documents handed out are the caller's to keep; engines never mutate them later.
+ */
+public interface TripRepository {
+
+    /**
+     * Trips of the user in _id order, starting after afterId (may be null), at most
+     * limit of them when limit is positive.
+     */
+    Future<List<JsonObject>> findByUser(String userId, String afterId, int limit);
+
+    /**
+     * Same selection as findByUser, delivered as a stream for large results.
+     */
+    ReadStream<JsonObject> streamByUser(String userId, String afterId, int limit, int batchSize);
+
+    /**
+     * Every trip with a day on date (yyyy-MM-dd), projected to userId, tripName and
+     * that one day, in userId order so each user's trips arrive together.
+     */
+    ReadStream<JsonObject> streamByDayDate(String date, int batchSize);
+
+    /**
+     * Same selection as findByUser, projected to tripName, description, createdAt,
+     * updatedAt, dayCount, activityCount, startDate and endDate.
+     */
+    Future<List<JsonObject>> summariesByUser(String userId, String afterId, int limit);
+
+    /**
+     * count, maxUpdatedAt and sumUpdatedAt over all of the user's trips.
+     */
+    Future<JsonObject> dashboardVersion(String userId);
+
+    /**
+     * The trip, limited to fields when given (a MongoDB-style projection), or null.
+     */
+    Future<JsonObject> findById(String userId, String tripId, JsonObject fields);
+
+    Future<Boolean> exists(String userId, String tripId);
+
+    /**
+     * Stores a new trip and returns its generated id.
+     */
+    Future<String> insert(JsonObject trip);
+
+    /**
+     * True if a trip was removed. The tombstone for {@link #deletedSince} is written
+     * before the trip is removed, and a failure to write it fails the delete.
+     */
+    Future<Boolean> delete(String userId, String tripId);
+
+    /**
+     * Trips of the user changed after the watermark, in (updatedAt, _id) order, at
+     * most limit of them. The watermark is since alone, or since plus afterId to
+     * resume inside a run of trips that share one updatedAt.
+     */
+    Future<List<JsonObject>> changedSince(String userId, long since, String afterId, int limit);
+
+    /**
+     * Tombstones ({_id: tripId, deletedAt}) of the user's trips deleted at or after
+     * since, for as long as the engine keeps them.
+     */
+    Future<List<JsonObject>> deletedSince(String userId, long since);
+
+    Future<WriteResult> updateTrip(String userId, String tripId, JsonObject fields);
+
+    /**
+     * Appends the day unless one with the same dayNumber exists.
+     */
+    Future<WriteResult> addDay(String userId, String tripId, JsonObject day);
+
+    Future<WriteResult> updateDayDate(String userId, String tripId, int dayNumber, String date);
+
+    Future<WriteResult> deleteDay(String userId, String tripId, int dayNumber);
+
+    Future<WriteResult> addActivity(String userId, String tripId, int dayNumber, JsonObject activity);
+
+    /**
+     * Sets the given fields on every activity named activityName in that day.
+     */
+    Future<WriteResult> updateActivity(String userId, String tripId, int dayNumber, String activityName,
+                                       JsonObject changes);
+
+    Future<WriteResult> deleteActivity(String userId, String tripId, int dayNumber, String activityName);
+
+    Future<WriteResult> reorderActivities(String userId, String tripId, int dayNumber, JsonArray activities);
+
+    /**
+     * Applies validated batch operations in order (see {@link TripOperations}) and
+     * returns one result per operation, or null if the trip does not exist.
+     */
+    Future<JsonArray> applyBatch(String userId, String tripId, JsonArray operations);
+}
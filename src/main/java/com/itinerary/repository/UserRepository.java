@@ -0,0 +1,23 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+public interface UserRepository {
+
+    /**
+     * Inserts the user and returns its id; fails with {@link DuplicateKeyException}
+     * if the username is taken.
+     */
+    Future<String> insert(JsonObject user);
+
+    /**
+     * Completes with null when no such user exists.
+     */
+    Future<JsonObject> findByUsername(String username);
+
+    /**
+     * Completes with null when no such user exists.
+     */
+    Future<JsonObject> findById(String userId);
+}
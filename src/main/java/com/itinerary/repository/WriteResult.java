@@ -0,0 +1,27 @@
+package com.itinerary.repository;
+
+/**
+ * Outcome of a conditional update: how many trips matched the filter and how many
+ * were changed. Both engines report these with MongoDB's semantics.
+ */
+public class WriteResult {
+
+    public static final WriteResult NO_MATCH = new WriteResult(0, 0);
+    public static final WriteResult MODIFIED = new WriteResult(1, 1);
+
+    private final long matched;
+    private final long modified;
+
+    public WriteResult(long matched, long modified) {
+        this.matched = matched;
+        this.modified = modified;
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+}
@@ -0,0 +1,476 @@
+package com.itinerary.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkOperationType;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.ext.mongo.MongoClientDeleteResult;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
+import io.vertx.ext.mongo.UpdateOptions;
+import org.bson.BsonDocument;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Just enough of MongoClient for the outbox and trip repositories: insert, find,
+ * findOne (inclusion projections), count, removeDocument, updates and ordered
+ * bulkWrite of updates.
+ *
+ * Filters support equality, $in, $ne, $lte, $gte and $elemMatch, with dotted
+ * paths reaching into arrays. Updates support $set, $inc, $push and $pull on
+ * dotted paths, including the positional "$" (first array element matched by the
+ * filter), "$[id]" with arrayFilters and numeric indexes. Results follow the real
+ * client: updateCollection and options without multi change only the first
+ * matching document, modified counts only documents that actually changed, and
+ * _id is unique per collection (E11000 on a clash, also when an upsert inserts).
+ * {@link #failBulkWrites} breaks a bulkWrite partway, as storage failures do.
+ */
+final class FakeMongoClient {
+
+    private final Map<String, List<JsonObject>> collections = new HashMap<>();
+    private int bulkFailAfter = -1;
+    private boolean bulkWriteError;
+
+    static MongoClient create() {
+        return new FakeMongoClient().client();
+    }
+
+    /**
+     * Makes every later bulkWrite fail after applying its first applied writes:
+     * with a MongoBulkWriteException reporting them when writeError is set, as an
+     * ordered bulk does at its first failing write, or else with a socket error
+     * that reports nothing, as a connection lost mid-bulk does.
+     */
+    void failBulkWrites(int applied, boolean writeError) {
+        this.bulkFailAfter = applied;
+        this.bulkWriteError = writeError;
+    }
+
+    MongoClient client() {
+        return (MongoClient) Proxy.newProxyInstance(MongoClient.class.getClassLoader(),
+                new Class<?>[]{MongoClient.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "insert":
+                            return insert((String) args[0], (JsonObject) args[1]);
+                        case "findOne":
+                            return Future.succeededFuture(
+                                    findOne((String) args[0], (JsonObject) args[1], (JsonObject) args[2]));
+                        case "count":
+                            return Future.succeededFuture((long) find((String) args[0], (JsonObject) args[1], null).size());
+                        case "removeDocument":
+                            return remove((String) args[0], (JsonObject) args[1]);
+                        case "find":
+                            return Future.succeededFuture(find((String) args[0], (JsonObject) args[1], null));
+                        case "findWithOptions":
+                            return Future.succeededFuture(
+                                    find((String) args[0], (JsonObject) args[1], (FindOptions) args[2]));
+                        case "updateCollection":
+                            return update((String) args[0], (JsonObject) args[1], (JsonObject) args[2],
+                                    new UpdateOptions());
+                        case "updateCollectionWithOptions":
+                            return update((String) args[0], (JsonObject) args[1], (JsonObject) args[2],
+                                    (UpdateOptions) args[3]);
+                        case "bulkWriteWithOptions":
+                            @SuppressWarnings("unchecked")
+                            List<BulkOperation> operations = (List<BulkOperation>) args[1];
+                            return bulkWrite((String) args[0], operations);
+                        case "close":
+                            return Future.succeededFuture();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private List<JsonObject> collection(String name) {
+        return collections.computeIfAbsent(name, k -> new ArrayList<>());
+    }
+
+    private Future<String> insert(String name, JsonObject document) {
+        String id = document.getString("_id", UUID.randomUUID().toString());
+        if (!find(name, new JsonObject().put("_id", id), null).isEmpty()) {
+            return Future.failedFuture(duplicateKey(name, id));
+        }
+        collection(name).add(document.copy().put("_id", id));
+        return Future.succeededFuture(id);
+    }
+
+    private static MongoWriteException duplicateKey(String name, String id) {
+        return new MongoWriteException(new WriteError(11000,
+                "E11000 duplicate key error collection: " + name + " dup key: { _id: \"" + id + "\" }",
+                new BsonDocument()), new ServerAddress());
+    }
+
+    private Future<MongoClientDeleteResult> remove(String name, JsonObject query) {
+        List<JsonObject> documents = collection(name);
+        for (int i = 0; i < documents.size(); i++) {
+            if (matches(documents.get(i), query)) {
+                documents.remove(i);
+                return Future.succeededFuture(new MongoClientDeleteResult(1));
+            }
+        }
+        return Future.succeededFuture(new MongoClientDeleteResult(0));
+    }
+
+    private JsonObject findOne(String name, JsonObject query, JsonObject fields) {
+        List<JsonObject> found = find(name, query, null);
+        if (found.isEmpty()) {
+            return null;
+        }
+        JsonObject document = found.get(0);
+        if (fields == null || fields.isEmpty()) {
+            return document;
+        }
+        // Inclusion projections only; a dotted path keeps its whole top-level field
+        JsonObject projected = new JsonObject().put("_id", document.getValue("_id"));
+        for (String path : fields.fieldNames()) {
+            String root = path.contains(".") ? path.substring(0, path.indexOf('.')) : path;
+            if (document.containsKey(root)) {
+                projected.put(root, document.getValue(root));
+            }
+        }
+        return projected;
+    }
+
+    private List<JsonObject> find(String name, JsonObject query, FindOptions options) {
+        List<JsonObject> found = new ArrayList<>();
+        for (JsonObject document : collection(name)) {
+            if (matches(document, query)) {
+                found.add(document.copy());
+            }
+        }
+        if (options != null && options.getSort() != null) {
+            for (String field : options.getSort().fieldNames()) {
+                found.sort(Comparator.comparingLong(document -> document.getLong(field, 0L)));
+            }
+        }
+        if (options != null && options.getLimit() > 0 && found.size() > options.getLimit()) {
+            return new ArrayList<>(found.subList(0, options.getLimit()));
+        }
+        return found;
+    }
+
+    private Future<MongoClientUpdateResult> update(String name, JsonObject query, JsonObject update,
+                                                   UpdateOptions options) {
+        long matched = 0;
+        long modified = 0;
+        for (JsonObject document : collection(name)) {
+            if (!matches(document, query)) {
+                continue;
+            }
+            JsonObject before = document.copy();
+            apply(document, query, update, options.getArrayFilters());
+            matched++;
+            if (!before.equals(document)) {
+                modified++;
+            }
+            if (!options.isMulti()) {
+                break;
+            }
+        }
+        if (matched == 0 && options.isUpsert()) {
+            JsonObject document = new JsonObject();
+            query.forEach(field -> {
+                if (!(field.getValue() instanceof JsonObject)) {
+                    document.put(field.getKey(), field.getValue());
+                }
+            });
+            apply(document, query, update, null);
+            return insert(name, document).map(id ->
+                    new MongoClientUpdateResult(0, new JsonObject().put(MongoClientUpdateResult.ID_FIELD, id), 0));
+        }
+        return Future.succeededFuture(new MongoClientUpdateResult(matched, null, modified));
+    }
+
+    private Future<MongoClientBulkWriteResult> bulkWrite(String name, List<BulkOperation> operations) {
+        long matched = 0;
+        long modified = 0;
+        for (BulkOperation operation : operations) {
+            if (matched == bulkFailAfter) {
+                return Future.failedFuture(bulkWriteError
+                        ? new MongoBulkWriteException(
+                                BulkWriteResult.acknowledged(0, (int) matched, 0, (int) modified, List.of()),
+                                List.of(new BulkWriteError(121, "Document failed validation", new BsonDocument(),
+                                        (int) matched)),
+                                null, new ServerAddress())
+                        : new MongoSocketReadException("Prematurely reached end of stream", new ServerAddress()));
+            }
+            if (operation.getType() != BulkOperationType.UPDATE) {
+                throw new UnsupportedOperationException("bulk " + operation.getType());
+            }
+            MongoClientUpdateResult result = update(name, operation.getFilter(), operation.getDocument(),
+                    new UpdateOptions().setMulti(operation.isMulti())).result();
+            matched += result.getDocMatched();
+            modified += result.getDocModified();
+        }
+        return Future.succeededFuture(new MongoClientBulkWriteResult(0, matched, 0, modified, List.of(), List.of()));
+    }
+
+    private static void apply(JsonObject document, JsonObject query, JsonObject update, JsonArray arrayFilters) {
+        Map<String, JsonObject> filters = new HashMap<>();
+        if (arrayFilters != null) {
+            for (int i = 0; i < arrayFilters.size(); i++) {
+                JsonObject filter = arrayFilters.getJsonObject(i);
+                for (String path : filter.fieldNames()) {
+                    String id = path.substring(0, path.indexOf('.'));
+                    filters.computeIfAbsent(id, k -> new JsonObject())
+                            .put(path.substring(id.length() + 1), filter.getValue(path));
+                }
+            }
+        }
+
+        update.getJsonObject("$set", new JsonObject()).forEach(field ->
+                targets(document, query, filters, field.getKey(), (parent, key) -> put(parent, key, field.getValue())));
+        update.getJsonObject("$inc", new JsonObject()).forEach(field ->
+                targets(document, query, filters, field.getKey(), (parent, key) -> {
+                    Object current = get(parent, key);
+                    long base = current instanceof Number ? ((Number) current).longValue() : 0L;
+                    put(parent, key, base + ((Number) field.getValue()).longValue());
+                }));
+        update.getJsonObject("$push", new JsonObject()).forEach(field ->
+                targets(document, query, filters, field.getKey(), (parent, key) -> {
+                    Object array = get(parent, key);
+                    if (array == null) {
+                        put(parent, key, array = new JsonArray());
+                    }
+                    ((JsonArray) array).add(field.getValue());
+                }));
+        update.getJsonObject("$pull", new JsonObject()).forEach(field ->
+                targets(document, query, filters, field.getKey(), (parent, key) -> {
+                    Object array = get(parent, key);
+                    if (array instanceof JsonArray) {
+                        ((JsonArray) array).getList().removeIf(element -> field.getValue() instanceof JsonObject
+                                ? asObject(element) != null && matches(asObject(element), (JsonObject) field.getValue())
+                                : valueEquals(element, field.getValue()));
+                    }
+                }));
+    }
+
+    /**
+     * Calls action with (parent, key) for every field the update path names.
+     */
+    private static void targets(JsonObject document, JsonObject query, Map<String, JsonObject> filters, String path,
+                                BiConsumer<Object, String> action) {
+        walk(document, query, filters, path.split("\\."), 0, "", action);
+    }
+
+    private static void walk(Object node, JsonObject query, Map<String, JsonObject> filters, String[] segments,
+                             int i, String arrayPath, BiConsumer<Object, String> action) {
+        String segment = segments[i];
+        boolean last = i == segments.length - 1;
+        List<String> keys = new ArrayList<>();
+
+        if (node instanceof JsonArray) {
+            JsonArray array = (JsonArray) node;
+            if (segment.equals("$")) {
+                int index = positional(array, query, arrayPath);
+                if (index < 0) {
+                    throw new IllegalStateException("The positional operator did not find the match needed");
+                }
+                keys.add(String.valueOf(index));
+            } else if (segment.startsWith("$[")) {
+                JsonObject filter = filters.get(segment.substring(2, segment.length() - 1));
+                for (int e = 0; e < array.size(); e++) {
+                    if (array.getValue(e) instanceof JsonObject && matches(array.getJsonObject(e), filter)) {
+                        keys.add(String.valueOf(e));
+                    }
+                }
+            } else {
+                keys.add(segment);
+            }
+        } else {
+            keys.add(segment);
+        }
+
+        for (String key : keys) {
+            if (last) {
+                action.accept(node, key);
+                continue;
+            }
+            Object child = get(node, key);
+            if (child == null) {
+                put(node, key, child = new JsonObject());
+            }
+            String childPath = node instanceof JsonArray ? arrayPath : arrayPath.isEmpty() ? key : arrayPath + "." + key;
+            walk(child, query, filters, segments, i + 1, childPath, action);
+        }
+    }
+
+    /**
+     * Index of the first element of the array at arrayPath matched by the filter's
+     * conditions on that array, as the positional "$" resolves it.
+     */
+    private static int positional(JsonArray array, JsonObject query, String arrayPath) {
+        for (int e = 0; e < array.size(); e++) {
+            if (!(array.getValue(e) instanceof JsonObject)) {
+                continue;
+            }
+            JsonObject element = array.getJsonObject(e);
+            boolean constrained = false;
+            boolean all = true;
+            for (String field : query.fieldNames()) {
+                Object condition = query.getValue(field);
+                if (field.equals(arrayPath) && condition instanceof JsonObject
+                        && ((JsonObject) condition).containsKey("$elemMatch")) {
+                    constrained = true;
+                    all &= matches(element, ((JsonObject) condition).getJsonObject("$elemMatch"));
+                } else if (field.startsWith(arrayPath + ".") && !isOperator(condition)) {
+                    constrained = true;
+                    all &= matches(element, new JsonObject().put(field.substring(arrayPath.length() + 1), condition));
+                }
+            }
+            if (constrained && all) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    private static Object get(Object parent, String key) {
+        if (parent instanceof JsonArray) {
+            JsonArray array = (JsonArray) parent;
+            int index = Integer.parseInt(key);
+            return index < array.size() ? array.getValue(index) : null;
+        }
+        return ((JsonObject) parent).getValue(key);
+    }
+
+    private static void put(Object parent, String key, Object value) {
+        if (parent instanceof JsonArray) {
+            ((JsonArray) parent).set(Integer.parseInt(key), value);
+        } else {
+            ((JsonObject) parent).put(key, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JsonObject asObject(Object element) {
+        if (element instanceof Map) {
+            return new JsonObject((Map<String, Object>) element);
+        }
+        return element instanceof JsonObject ? (JsonObject) element : null;
+    }
+
+    private static boolean isOperator(Object condition) {
+        if (!(condition instanceof JsonObject) || ((JsonObject) condition).isEmpty()) {
+            return false;
+        }
+        return ((JsonObject) condition).fieldNames().iterator().next().startsWith("$");
+    }
+
+    private static boolean matches(JsonObject document, JsonObject query) {
+        for (String field : query.fieldNames()) {
+            Object condition = query.getValue(field);
+            List<Object> values = new ArrayList<>();
+            collect(document, field.split("\\."), 0, values);
+            if (!isOperator(condition)) {
+                if (!anyEquals(values, condition)) {
+                    return false;
+                }
+                continue;
+            }
+            JsonObject operators = (JsonObject) condition;
+            for (String operator : operators.fieldNames()) {
+                Object operand = operators.getValue(operator);
+                boolean ok;
+                switch (operator) {
+                    case "$in":
+                        ok = values.stream().anyMatch(value -> anyEquals(List.of(value), operand)
+                                || ((JsonArray) operand).stream().anyMatch(candidate -> valueEquals(value, candidate)));
+                        break;
+                    case "$ne":
+                        ok = !anyEquals(values, operand);
+                        break;
+                    case "$lte":
+                        ok = values.stream().anyMatch(value -> compare(value, operand) <= 0);
+                        break;
+                    case "$gte":
+                        ok = values.stream().anyMatch(value -> compare(value, operand) >= 0);
+                        break;
+                    case "$elemMatch":
+                        ok = values.stream().anyMatch(value -> value instanceof JsonArray
+                                && ((JsonArray) value).stream().anyMatch(element -> element instanceof JsonObject
+                                && matches((JsonObject) element, (JsonObject) operand)));
+                        break;
+                    default:
+                        throw new UnsupportedOperationException(operator);
+                }
+                if (!ok) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The values a dotted path reaches, descending into every element of the arrays
+     * on the way, as Mongo's query paths do.
+     */
+    private static void collect(Object node, String[] segments, int i, List<Object> values) {
+        if (i == segments.length) {
+            values.add(node);
+            return;
+        }
+        if (node instanceof JsonObject) {
+            JsonObject object = (JsonObject) node;
+            if (object.containsKey(segments[i])) {
+                collect(object.getValue(segments[i]), segments, i + 1, values);
+            } else if (i == segments.length - 1) {
+                values.add(null);
+            }
+        } else if (node instanceof JsonArray) {
+            for (Object element : (JsonArray) node) {
+                collect(element, segments, i, values);
+            }
+        }
+    }
+
+    private static boolean anyEquals(List<Object> values, Object expected) {
+        if (values.isEmpty()) {
+            return expected == null;
+        }
+        for (Object value : values) {
+            if (valueEquals(value, expected)) {
+                return true;
+            }
+            if (value instanceof JsonArray && ((JsonArray) value).stream().anyMatch(e -> valueEquals(e, expected))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean valueEquals(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return compare(a, b) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static int compare(Object a, Object b) {
+        if (!(a instanceof Number) || !(b instanceof Number)) {
+            return a == null || b == null ? -1 : a.toString().compareTo(b.toString());
+        }
+        return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+}
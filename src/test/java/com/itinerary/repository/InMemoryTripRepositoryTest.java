@@ -0,0 +1,14 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Vertx;
+
+/**
+ * The repository contract on the in-memory engine.
+ */
+class InMemoryTripRepositoryTest extends TripRepositoryContract {
+
+    @Override
+    protected TripRepository repository(Vertx vertx) {
+        return new InMemoryTripRepository(vertx);
+    }
+}
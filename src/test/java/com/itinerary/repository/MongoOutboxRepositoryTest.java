@@ -0,0 +1,115 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Status changes must reach every record in a batch. The in-memory outbox cannot
+ * show this, so these run against MongoOutboxRepository: on FakeMongoClient by
+ * default, or on a real server when -Ditinerary.test.mongo=<connection string>.
+ */
+class MongoOutboxRepositoryTest {
+
+    private static final String COLLECTION = "email_outbox";
+    private static final long NOW = 1_723_423_423_000L;
+
+    private Vertx vertx;
+    private MongoClient mongo;
+    private MongoOutboxRepository outbox;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        String connectionString = System.getProperty("itinerary.test.mongo");
+        if (connectionString != null) {
+            mongo = MongoClient.create(vertx, new JsonObject()
+                    .put("connection_string", connectionString)
+                    .put("db_name", "itinerary_test"));
+            await(mongo.dropCollection(COLLECTION).recover(err -> Future.succeededFuture()));
+        } else {
+            mongo = FakeMongoClient.create();
+        }
+        outbox = new MongoOutboxRepository(mongo);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(mongo.close());
+        await(vertx.close());
+    }
+
+    @Test
+    void claimsAndMarksSentEveryDueRecord() throws Exception {
+        appendDue(3);
+
+        List<JsonObject> claimed = await(outbox.claimDue(NOW, 10));
+        assertEquals(3, claimed.size());
+        assertEquals(3, count(OutboxStatus.SENDING));
+
+        await(outbox.markSent(ids(claimed), NOW));
+        assertEquals(3, count(OutboxStatus.SENT));
+    }
+
+    @Test
+    void releasesEveryClaimedRecord() throws Exception {
+        appendDue(3);
+        await(outbox.claimDue(NOW, 10));
+
+        await(outbox.releaseClaims());
+        assertEquals(3, count(OutboxStatus.PENDING));
+    }
+
+    @Test
+    void retriesAndDeadLettersEveryRecordOfABatch() throws Exception {
+        appendDue(4);
+        List<JsonObject> claimed = await(outbox.claimDue(NOW, 10));
+        List<String> ids = ids(claimed);
+
+        await(outbox.retry(ids.subList(0, 2), NOW + 60_000, "timeout"));
+        await(outbox.deadLetter(ids.subList(2, 4), "rejected"));
+
+        assertEquals(2, count(OutboxStatus.PENDING));
+        assertEquals(2, count(OutboxStatus.DEAD));
+        for (JsonObject record : await(mongo.find(COLLECTION, new JsonObject()))) {
+            assertEquals(1, record.getInteger("attempts"));
+        }
+    }
+
+    private void appendDue(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            await(outbox.append(new JsonObject()
+                    .put("type", "welcome")
+                    .put("to", "user" + i + "@example.com")
+                    .put("userId", "user" + i)
+                    .put("status", OutboxStatus.PENDING)
+                    .put("attempts", 0)
+                    .put("createdAt", NOW - 1_000)
+                    .put("nextAttemptAt", NOW - 1_000 + i)));
+        }
+    }
+
+    private int count(String status) throws Exception {
+        return await(mongo.find(COLLECTION, new JsonObject().put("status", status))).size();
+    }
+
+    private static List<String> ids(List<JsonObject> records) {
+        List<String> ids = new ArrayList<>();
+        records.forEach(record -> ids.add(record.getString("_id")));
+        return ids;
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+}
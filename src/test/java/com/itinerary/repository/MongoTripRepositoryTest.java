@@ -0,0 +1,106 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The repository contract on FakeMongoClient by default, or on a real server when
+ * -Ditinerary.test.mongo=<connection string>. Storage failures can only be staged
+ * on the fake, so those tests are skipped against a real server.
+ */
+class MongoTripRepositoryTest extends TripRepositoryContract {
+
+    private MongoClient mongo;
+    private FakeMongoClient fake;
+
+    @Override
+    protected TripRepository repository(Vertx vertx) throws Exception {
+        String connectionString = System.getProperty("itinerary.test.mongo");
+        if (connectionString != null) {
+            mongo = MongoClient.create(vertx, new JsonObject()
+                    .put("connection_string", connectionString)
+                    .put("db_name", "itinerary_test"));
+            for (String collection : new String[]{"trips", "trip_tombstones"}) {
+                await(mongo.dropCollection(collection).recover(err -> Future.succeededFuture()));
+            }
+        } else {
+            fake = new FakeMongoClient();
+            mongo = fake.client();
+        }
+        return new MongoTripRepository(mongo);
+    }
+
+    @Override
+    protected void closeRepository() throws Exception {
+        await(mongo.close());
+    }
+
+    @Test
+    void batchReportsTheWritesBeforeAWriteErrorAsApplied() throws Exception {
+        assumeTrue(fake != null);
+        fake.failBulkWrites(1, true);
+
+        JsonArray results = await(trips.applyBatch("alice", tripId, threeWrites()));
+
+        assertStatuses(results, 200, 404, 503, 503);
+        assertEquals("Not applied, storage write failed; retry this operation",
+                results.getJsonObject(2).getString("error"));
+        JsonObject trip = trip();
+        assertEquals(1, dayOf(trip, 2).getJsonArray("places").size());
+        assertEquals("09:00", dayOf(trip, 1).getJsonArray("places").getJsonObject(0).getString("time"));
+        assertEquals("Lisbon", trip.getString("tripName"));
+    }
+
+    @Test
+    void batchReadsBackWhatALostConnectionApplied() throws Exception {
+        assumeTrue(fake != null);
+        fake.failBulkWrites(2, false);
+
+        JsonArray results = await(trips.applyBatch("alice", tripId, threeWrites()));
+
+        assertStatuses(results, 200, 404, 200, 503);
+        JsonObject trip = trip();
+        assertEquals("10:00", dayOf(trip, 1).getJsonArray("places").getJsonObject(0).getString("time"));
+        assertEquals("Lisbon", trip.getString("tripName"));
+    }
+
+    @Test
+    void batchFailsWhenNothingWasApplied() throws Exception {
+        assumeTrue(fake != null);
+        JsonObject before = trip();
+
+        fake.failBulkWrites(0, true);
+        assertThrows(ExecutionException.class, () -> await(trips.applyBatch("alice", tripId, threeWrites())));
+        fake.failBulkWrites(0, false);
+        assertThrows(ExecutionException.class, () -> await(trips.applyBatch("alice", tripId, threeWrites())));
+
+        assertEquals(before, trip());
+    }
+
+    private static JsonArray threeWrites() {
+        return new JsonArray()
+                .add(new JsonObject().put("op", "addActivity").put("dayNumber", 2)
+                        .put("activity", "Museum").put("time", "15:00"))
+                .add(new JsonObject().put("op", "deleteDay").put("dayNumber", 9))
+                .add(new JsonObject().put("op", "updateActivity").put("dayNumber", 1)
+                        .put("activityName", "Tram 28").put("time", "10:00"))
+                .add(new JsonObject().put("op", "updateTrip").put("tripName", "Lisbon and Sintra"));
+    }
+
+    private static void assertStatuses(JsonArray results, int... statuses) {
+        assertEquals(statuses.length, results.size());
+        for (int i = 0; i < statuses.length; i++) {
+            assertEquals(statuses[i], results.getJsonObject(i).getInteger("status"), "operation " + i);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.itinerary.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Scenarios every TripRepository engine must agree on. Each subclass supplies its
+ * engine; the trip under test belongs to alice and starts as
+ * day 1: Tram 28, Lunch, Lunch (two activities share a name), day 2: no places.
+ */
+abstract class TripRepositoryContract {
+
+    protected Vertx vertx;
+    protected TripRepository trips;
+    protected String tripId;
+
+    /**
+     * The engine under test, empty.
+     */
+    protected abstract TripRepository repository(Vertx vertx) throws Exception;
+
+    protected void closeRepository() throws Exception {
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        trips = repository(vertx);
+        tripId = await(trips.insert(new JsonObject()
+                .put("userId", "alice")
+                .put("tripName", "Lisbon")
+                .put("days", new JsonArray()
+                        .add(new JsonObject()
+                                .put("dayNumber", 1)
+                                .put("date", "2024-05-01")
+                                .put("places", new JsonArray()
+                                        .add(place("Tram 28", "09:00"))
+                                        .add(place("Lunch", "12:30"))
+                                        .add(place("Lunch", "19:30"))))
+                        .add(new JsonObject()
+                                .put("dayNumber", 2)
+                                .put("date", "2024-05-02")
+                                .put("places", new JsonArray())))
+                .put("updatedAt", 1L)));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeRepository();
+        await(vertx.close());
+    }
+
+    @Test
+    void editsOfAnotherUsersTripMatchNothing() throws Exception {
+        JsonObject before = trip();
+
+        assertNoMatch(trips.updateTrip("bob", tripId, new JsonObject().put("tripName", "Mine")));
+        assertNoMatch(trips.addDay("bob", tripId, day(3)));
+        assertNoMatch(trips.updateDayDate("bob", tripId, 1, "2024-06-01"));
+        assertNoMatch(trips.deleteDay("bob", tripId, 1));
+        assertNoMatch(trips.addActivity("bob", tripId, 1, place("Museum", "15:00")));
+        assertNoMatch(trips.updateActivity("bob", tripId, 1, "Lunch",
+                new JsonObject().put("time", "13:00")));
+        assertNoMatch(trips.deleteActivity("bob", tripId, 1, "Lunch"));
+        assertNoMatch(trips.reorderActivities("bob", tripId, 1, new JsonArray()));
+        assertNull(await(trips.applyBatch("bob", tripId, new JsonArray()
+                .add(new JsonObject().put("op", "deleteDay").put("dayNumber", 1)))));
+        assertNull(await(trips.findById("bob", tripId, null)));
+        assertFalse(await(trips.exists("bob", tripId)));
+
+        assertEquals(before, trip());
+    }
+
+    @Test
+    void editsOfAMissingDayMatchNothing() throws Exception {
+        JsonObject before = trip();
+
+        assertNoMatch(trips.updateDayDate("alice", tripId, 9, "2024-06-01"));
+        assertNoMatch(trips.deleteDay("alice", tripId, 9));
+        assertNoMatch(trips.addActivity("alice", tripId, 9, place("Museum", "15:00")));
+        assertNoMatch(trips.updateActivity("alice", tripId, 9, "Lunch",
+                new JsonObject().put("time", "13:00")));
+        assertNoMatch(trips.deleteActivity("alice", tripId, 9, "Lunch"));
+        assertNoMatch(trips.reorderActivities("alice", tripId, 9, new JsonArray()));
+
+        assertEquals(before, trip());
+    }
+
+    @Test
+    void editsOfAMissingActivityMatchNothing() throws Exception {
+        JsonObject before = trip();
+
+        assertNoMatch(trips.updateActivity("alice", tripId, 1, "Museum",
+                new JsonObject().put("time", "13:00")));
+        assertNoMatch(trips.deleteActivity("alice", tripId, 1, "Museum"));
+        // Lunch exists, but not on day 2
+        assertNoMatch(trips.updateActivity("alice", tripId, 2, "Lunch",
+                new JsonObject().put("time", "13:00")));
+        assertNoMatch(trips.deleteActivity("alice", tripId, 2, "Lunch"));
+
+        assertEquals(before, trip());
+    }
+
+    @Test
+    void addDayRefusesAnExistingDayNumber() throws Exception {
+        assertNoMatch(trips.addDay("alice", tripId, day(1)));
+        assertEquals(2, trip().getJsonArray("days").size());
+
+        assertModified(trips.addDay("alice", tripId, day(3)));
+        assertEquals(3, dayOf(trip(), 3).getInteger("dayNumber"));
+    }
+
+    @Test
+    void updateActivityChangesEveryActivityWithThatName() throws Exception {
+        assertModified(trips.updateActivity("alice", tripId, 1, "Lunch",
+                new JsonObject().put("time", "13:00").put("location", "Baixa")));
+
+        JsonObject trip = trip();
+        JsonArray places = dayOf(trip, 1).getJsonArray("places");
+        assertEquals(place("Tram 28", "09:00"), places.getJsonObject(0));
+        assertEquals(place("Lunch", "13:00").put("location", "Baixa"), places.getJsonObject(1));
+        assertEquals(place("Lunch", "13:00").put("location", "Baixa"), places.getJsonObject(2));
+        assertTrue(trip.getLong("updatedAt") > 1L);
+    }
+
+    @Test
+    void deleteActivityRemovesEveryActivityWithThatName() throws Exception {
+        assertModified(trips.deleteActivity("alice", tripId, 1, "Lunch"));
+
+        JsonObject trip = trip();
+        assertEquals(new JsonArray().add(place("Tram 28", "09:00")), dayOf(trip, 1).getJsonArray("places"));
+        assertTrue(trip.getLong("updatedAt") > 1L);
+    }
+
+    @Test
+    void reorderReplacesTheDaysActivities() throws Exception {
+        JsonArray reordered = new JsonArray()
+                .add(place("Lunch", "12:30"))
+                .add(place("Tram 28", "09:00"));
+
+        assertModified(trips.reorderActivities("alice", tripId, 1, reordered));
+
+        JsonObject trip = trip();
+        assertEquals(reordered, dayOf(trip, 1).getJsonArray("places"));
+        assertEquals(new JsonArray(), dayOf(trip, 2).getJsonArray("places"));
+        assertTrue(trip.getLong("updatedAt") > 1L);
+    }
+
+    @Test
+    void batchReportsEachOperationAndAppliesTheOnesThatMatch() throws Exception {
+        JsonArray results = await(trips.applyBatch("alice", tripId, new JsonArray()
+                .add(new JsonObject().put("op", "addActivity").put("dayNumber", 2)
+                        .put("activity", "Museum").put("time", "15:00"))
+                .add(new JsonObject().put("op", "updateDay").put("dayNumber", 9).put("date", "2024-06-01"))
+                .add(new JsonObject().put("op", "deleteActivity").put("dayNumber", 1).put("activityName", "Nope"))
+                .add(new JsonObject().put("op", "updateActivity").put("dayNumber", 1)
+                        .put("activityName", "Tram 28").put("time", "10:00"))
+                .add(new JsonObject().put("op", "updateTrip").put("tripName", "Lisbon and Sintra"))));
+
+        assertEquals(5, results.size());
+        int[] statuses = {200, 404, 404, 200, 200};
+        for (int i = 0; i < statuses.length; i++) {
+            assertEquals(statuses[i], results.getJsonObject(i).getInteger("status"), "operation " + i);
+            assertEquals(i, results.getJsonObject(i).getInteger("index"));
+        }
+        assertEquals("Day not found", results.getJsonObject(1).getString("error"));
+
+        JsonObject trip = trip();
+        assertEquals("Lisbon and Sintra", trip.getString("tripName"));
+        assertEquals("10:00", dayOf(trip, 1).getJsonArray("places").getJsonObject(0).getString("time"));
+        assertEquals(3, dayOf(trip, 1).getJsonArray("places").size());
+        assertEquals(new JsonArray().add(new JsonObject().put("activity", "Museum").put("time", "15:00")),
+                dayOf(trip, 2).getJsonArray("places"));
+        assertEquals("2024-05-01", dayOf(trip, 1).getString("date"));
+        assertTrue(trip.getLong("updatedAt") > 1L);
+    }
+
+    @Test
+    void deleteOfAnotherUsersTripWritesNothing() throws Exception {
+        assertFalse(await(trips.delete("bob", tripId)));
+
+        assertTrue(await(trips.exists("alice", tripId)));
+        assertTrue(await(trips.deletedSince("bob", 0)).isEmpty());
+        assertTrue(await(trips.deletedSince("alice", 0)).isEmpty());
+    }
+
+    @Test
+    void deleteOfAnotherUsersDeletedTripDoesNotFail() throws Exception {
+        assertTrue(await(trips.delete("alice", tripId)));
+
+        assertFalse(await(trips.delete("bob", tripId)));
+
+        List<JsonObject> tombstones = await(trips.deletedSince("alice", 0));
+        assertEquals(1, tombstones.size());
+        assertEquals(tripId, tombstones.get(0).getString("_id"));
+        assertTrue(await(trips.deletedSince("bob", 0)).isEmpty());
+    }
+
+    @Test
+    void repeatedDeleteKeepsOneTombstone() throws Exception {
+        assertTrue(await(trips.delete("alice", tripId)));
+        assertFalse(await(trips.delete("alice", tripId)));
+
+        assertFalse(await(trips.exists("alice", tripId)));
+        assertEquals(1, await(trips.deletedSince("alice", 0)).size());
+    }
+
+    protected static void assertNoMatch(Future<WriteResult> write) throws Exception {
+        WriteResult result = await(write);
+        assertEquals(0, result.getMatched(), "matched");
+        assertEquals(0, result.getModified(), "modified");
+    }
+
+    protected static void assertModified(Future<WriteResult> write) throws Exception {
+        WriteResult result = await(write);
+        assertEquals(1, result.getMatched(), "matched");
+        assertEquals(1, result.getModified(), "modified");
+    }
+
+    protected JsonObject trip() throws Exception {
+        return await(trips.findById("alice", tripId, null));
+    }
+
+    protected static JsonObject dayOf(JsonObject trip, int dayNumber) {
+        for (int i = 0; i < trip.getJsonArray("days").size(); i++) {
+            JsonObject day = trip.getJsonArray("days").getJsonObject(i);
+            if (day.getInteger("dayNumber") == dayNumber) {
+                return day;
+            }
+        }
+        throw new AssertionError("No day " + dayNumber + " in " + trip);
+    }
+
+    protected static JsonObject day(int dayNumber) {
+        return new JsonObject()
+                .put("dayNumber", dayNumber)
+                .put("date", "2024-05-0" + dayNumber)
+                .put("places", new JsonArray());
+    }
+
+    protected static JsonObject place(String activity, String time) {
+        return new JsonObject().put("activity", activity).put("time", time);
+    }
+
+    protected static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+}